@@ -1,7 +1,11 @@
 package com.elasticsearch.config;
 
+import java.util.Arrays;
+
 import org.apache.http.HttpHost;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
 import org.elasticsearch.client.*;
+import org.elasticsearch.client.sniff.*;
 import org.slf4j.*;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.AbstractFactoryBean;
@@ -10,7 +14,8 @@ import org.springframework.context.annotation.Configuration;
 /**
  * 
  * Configuration of Rest High Level Client, it exposes ES API specific methods which accept request objects as argument and 
- * return response objects 
+ * return response objects. A single pooled client is shared by all injection points, requests are spread over every
+ * configured host and, when sniffing is enabled, over every node discovered in the cluster
  */
 
 @Configuration
@@ -24,8 +29,31 @@ public class ElasticSearchConfiguration extends AbstractFactoryBean<RestHighLeve
 	private String host;
 	@Value("${spring.elasticsearch.jest.proxy.port}")
 	private int port;
+	@Value("${elasticsearch.client.hosts:}")
+	private String hosts;
+	@Value("${elasticsearch.client.max-connections:100}")
+	private int maxConnections;
+	@Value("${elasticsearch.client.max-connections-per-route:30}")
+	private int maxConnectionsPerRoute;
+	@Value("${elasticsearch.client.io-threads:0}")
+	private int ioThreads;
+	@Value("${elasticsearch.client.keep-alive-millis:60000}")
+	private long keepAliveMillis;
+	@Value("${elasticsearch.client.connect-timeout-millis:1000}")
+	private int connectTimeoutMillis;
+	@Value("${elasticsearch.client.socket-timeout-millis:30000}")
+	private int socketTimeoutMillis;
+	@Value("${elasticsearch.client.max-retry-timeout-millis:30000}")
+	private int maxRetryTimeoutMillis;
+	@Value("${elasticsearch.client.sniff.enabled:false}")
+	private boolean sniffEnabled;
+	@Value("${elasticsearch.client.sniff.interval-millis:300000}")
+	private int sniffIntervalMillis;
+	@Value("${elasticsearch.client.sniff.after-failure-delay-millis:60000}")
+	private int sniffAfterFailureDelayMillis;
 	
 	private RestHighLevelClient restHighLevelClient;
+	private Sniffer sniffer;
 	private static final Logger logger = LoggerFactory.getLogger(ElasticSearchConfiguration.class);
 
 	@Override
@@ -36,6 +64,8 @@ public class ElasticSearchConfiguration extends AbstractFactoryBean<RestHighLeve
 	@Override
 	public void destroy() {
 		try {
+			if (sniffer != null)
+				sniffer.close();
 			if (restHighLevelClient != null)
 				restHighLevelClient.close();
 		} catch (final Exception e) {
@@ -50,17 +80,54 @@ public class ElasticSearchConfiguration extends AbstractFactoryBean<RestHighLeve
 
 	@Override
 	public boolean isSingleton() {
-		return false;
+		return true;
 	}
 
 	// Build Rest High Level Client
 	private RestHighLevelClient buildClient() {
 		try {
-			restHighLevelClient = new RestHighLevelClient(RestClient.builder(new HttpHost(host, port, "http")));
+			RestClientBuilder builder = buildClientBuilder(1, parseHosts());
+
+			SniffOnFailureListener sniffOnFailureListener = new SniffOnFailureListener();
+			if (sniffEnabled)
+				builder.setFailureListener(sniffOnFailureListener);
+
+			restHighLevelClient = new RestHighLevelClient(builder);
+
+			if (sniffEnabled) {
+				sniffer = Sniffer.builder(restHighLevelClient.getLowLevelClient()).setSniffIntervalMillis(sniffIntervalMillis)
+						.setSniffAfterFailureDelayMillis(sniffAfterFailureDelayMillis).build();
+				sniffOnFailureListener.setSniffer(sniffer);
+			}
 		} catch (Exception e) {
 			logger.error(e.getMessage());
 		}
 		return restHighLevelClient;
 	}
 
+	// Builder with the configured timeouts and keep alive, and the given share of the configured pool and I/O threads,
+	// e.g. a share of 3 for each of the node clients of three hosts
+	RestClientBuilder buildClientBuilder(int shares, HttpHost... httpHosts) {
+		int connections = Math.max(1, maxConnections / shares);
+		return RestClient.builder(httpHosts).setMaxRetryTimeoutMillis(maxRetryTimeoutMillis)
+				.setRequestConfigCallback(requestConfig -> requestConfig.setConnectTimeout(connectTimeoutMillis).setSocketTimeout(socketTimeoutMillis))
+				.setHttpClientConfigCallback(httpClient -> httpClient.setMaxConnTotal(connections).setMaxConnPerRoute(Math.min(maxConnectionsPerRoute, connections))
+						.setKeepAliveStrategy((response, context) -> keepAliveMillis).setDefaultIOReactorConfig(buildIOReactorConfig(shares)));
+	}
+
+	private IOReactorConfig buildIOReactorConfig(int shares) {
+		IOReactorConfig.Builder ioReactorConfig = IOReactorConfig.custom().setSoKeepAlive(true);
+		if (ioThreads > 0 || shares > 1)
+			ioReactorConfig.setIoThreadCount(Math.max(1, (ioThreads > 0 ? ioThreads : Runtime.getRuntime().availableProcessors()) / shares));
+		return ioReactorConfig.build();
+	}
+
+	// Parses the comma separated host list, falling back to the single proxy host and port
+	HttpHost[] parseHosts() {
+		if (hosts == null || hosts.trim().isEmpty())
+			return new HttpHost[] { new HttpHost(host, port, "http") };
+
+		return Arrays.stream(hosts.split(",")).map(String::trim).filter(h -> !h.isEmpty()).map(HttpHost::create).toArray(HttpHost[]::new);
+	}
+
 }
@@ -0,0 +1,65 @@
+package com.elasticsearch.config;
+
+import java.io.IOException;
+import java.util.*;
+
+import javax.annotation.*;
+
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.slf4j.*;
+import org.springframework.stereotype.Component;
+
+/**
+ * Clients bound to a single configured host each, keyed by host, with the same settings as the shared client.
+ * Unlike the shared client, which spreads requests over all hosts itself, they let the caller decide which node
+ * coordinates a request. They split the configured connection budget between them, so together they hold no more
+ * connections than the shared client. With a single configured host there is nothing to choose and the shared
+ * client, with its pool and sniffer, is used for it. Nodes found by sniffing are only reached through the shared client.
+ */
+
+@Component
+public class NodeClients {
+
+	private static final Logger logger = LoggerFactory.getLogger(NodeClients.class);
+
+	private final ElasticSearchConfiguration configuration;
+	private final RestHighLevelClient restHighLevelClient;
+	private final Map<String, RestHighLevelClient> clients = new LinkedHashMap<>();
+	private boolean ownClients;
+
+	public NodeClients(ElasticSearchConfiguration configuration, RestHighLevelClient restHighLevelClient) {
+		this.configuration = configuration;
+		this.restHighLevelClient = restHighLevelClient;
+	}
+
+	@PostConstruct
+	private void init() {
+		HttpHost[] httpHosts = configuration.parseHosts();
+		if (httpHosts.length == 1) {
+			clients.put(httpHosts[0].toHostString(), restHighLevelClient);
+			return;
+		}
+
+		ownClients = true;
+		for (HttpHost httpHost : httpHosts)
+			clients.put(httpHost.toHostString(), new RestHighLevelClient(configuration.buildClientBuilder(httpHosts.length, httpHost)));
+	}
+
+	@PreDestroy
+	private void destroy() {
+		if (!ownClients)
+			return;
+		for (RestHighLevelClient client : clients.values())
+			try {
+				client.close();
+			} catch (IOException e) {
+				logger.error("Error closing ElasticSearch node client: ", e);
+			}
+	}
+
+	public Map<String, RestHighLevelClient> getClients() {
+		return Collections.unmodifiableMap(clients);
+	}
+
+}
@@ -0,0 +1,37 @@
+package com.elasticsearch.controller;
+
+import java.io.IOException;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.elasticsearch.model.BookEvent;
+import com.elasticsearch.service.BookChangeFeed;
+
+/**
+ * Writes change feed events as Server-Sent Events. The event ID lets the browser resume through the Last-Event-ID
+ * header when it reconnects, heartbeats are comments which the browser ignores.
+ */
+
+final class BookEventEmitter extends SseEmitter implements BookChangeFeed.Sink {
+
+	BookEventEmitter(long timeoutMillis) {
+		super(timeoutMillis);
+	}
+
+	@Override
+	public void deliver(BookEvent event) throws IOException {
+		send(event().id(String.valueOf(event.getId())).data(event, MediaType.APPLICATION_JSON));
+	}
+
+	@Override
+	public void heartbeat() throws IOException {
+		send(event().comment("heartbeat"));
+	}
+
+	@Override
+	public void fail(Exception e) {
+		completeWithError(e);
+	}
+
+}
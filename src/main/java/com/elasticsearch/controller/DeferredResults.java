@@ -0,0 +1,27 @@
+package com.elasticsearch.controller;
+
+import java.util.concurrent.CompletionStage;
+
+import org.springframework.web.context.request.async.DeferredResult;
+
+/**
+ * Bridges service futures to Spring MVC async request processing so the servlet thread is released
+ * while the ES request is in flight
+ */
+
+final class DeferredResults {
+
+	private DeferredResults() {}
+
+	static <T> DeferredResult<T> of(CompletionStage<T> stage) {
+		DeferredResult<T> deferredResult = new DeferredResult<>();
+		stage.whenComplete((result, error) -> {
+			if (error != null)
+				deferredResult.setErrorResult(error);
+			else
+				deferredResult.setResult(result);
+		});
+		return deferredResult;
+	}
+
+}
@@ -4,13 +4,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import com.elasticsearch.model.*;
-import com.elasticsearch.service.IBookService;
+import com.elasticsearch.service.*;
 
 /**
  * Controller uses thymeleaf templates for view rendering and binds data to the view through model
- * attributes
+ * attributes. Writes wait for a refresh so the book list shown next already contains them
  * @author Farhan Haq
  */
 
@@ -33,27 +34,17 @@ public class ElasticSearchController {
 
 	// Renders view for delete status
 	@RequestMapping(value = "/delete", method = RequestMethod.POST)
-	public String deleteBook(Model model, @ModelAttribute Book book) {
+	public DeferredResult<String> deleteBook(Model model, @ModelAttribute Book book) {
 
 		String id = book.getId();
-		IResultData result = bookService.deleteBookRecord(id);
-
-		model.addAttribute("error", result.hasError());
-		model.addAttribute("message", result.getMessage());
-
-		return "status";
+		return DeferredResults.of(bookService.deleteBookRecordAsync(id, WriteConsistency.WAIT_UNTIL).thenApply(result -> statusView(model, result)));
 	}
 
 	// Renders view for add status
 	@RequestMapping(value = "/add", method = RequestMethod.POST)
-	public String insertBook(Model model, @ModelAttribute Book book) throws Exception {
+	public DeferredResult<String> insertBook(Model model, @ModelAttribute Book book) throws Exception {
 
-		IResultData result = bookService.addBookRecord(book);
-
-		model.addAttribute("error", result.hasError());
-		model.addAttribute("message", result.getMessage());
-
-		return "status";
+		return DeferredResults.of(bookService.addBookRecordAsync(book, WriteConsistency.WAIT_UNTIL).thenApply(result -> statusView(model, result)));
 	}
 
 	// Renders main view for showing all book records
@@ -69,21 +60,26 @@ public class ElasticSearchController {
 
 	// Renders view for update status
 	@RequestMapping(value = "/update", method = RequestMethod.POST)
-	public String updateBook(Model model, @ModelAttribute Book book) {
+	public DeferredResult<String> updateBook(Model model, @ModelAttribute Book book) {
 
-		IResultData result = bookService.updateBookRecord(book);
-
-		model.addAttribute("error", result.hasError());
-		model.addAttribute("message", result.getMessage());
-		return "status";
+		return DeferredResults.of(bookService.updateBookRecordAsync(book, WriteConsistency.WAIT_UNTIL).thenApply(result -> statusView(model, result)));
 	}
 
 	// Renders view for updating a book record
 	@RequestMapping(value = "/updateBook", method = RequestMethod.GET)
-	public String updateBookView(Model model, @RequestParam("id") String id) {
+	public DeferredResult<String> updateBookView(Model model, @RequestParam("id") String id) {
+
+		return DeferredResults.of(bookService.getBookRecordAsync(id).thenApply(book -> {
+			model.addAttribute("book", book);
+			return "updateBook";
+		}));
+	}
+
+	// Binds the result of a write operation to the status view
+	private String statusView(Model model, IResultData result) {
 
-		IBook book = bookService.getBookRecord(id);
-		model.addAttribute("book", book);
-		return "updateBook";
+		model.addAttribute("error", result.hasError());
+		model.addAttribute("message", result.getMessage());
+		return "status";
 	}
 }
@@ -1,28 +1,213 @@
 package com.elasticsearch.controller;
 
-import java.util.List;
+import java.io.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+import javax.servlet.http.HttpServletResponse;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
-import com.elasticsearch.model.IBook;
-import com.elasticsearch.service.IBookService;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.*;
+
+import com.elasticsearch.model.*;
+import com.elasticsearch.resilience.*;
+import com.elasticsearch.service.*;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 @RestController
 public class RestElasticSearchController {
 
+	private static final String NDJSON = "application/x-ndjson";
+	private static final String CSV = "text/csv";
+
 	@Autowired
 	private IBookService bookService;
 
+	@Autowired
+	private BookIndexManager indexManager;
+
+	@Autowired
+	private BookExporter bookExporter;
+
+	@Autowired
+	private HedgedReader hedgedReader;
+
+	@Autowired
+	private ClientGuard clientGuard;
+
+	@Autowired
+	private BookChangeFeed bookChangeFeed;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
 	@GetMapping(value = "/get/all")
-	public List<IBook> getBooks() {
-		List<IBook> books = bookService.getBookRecords();
+	public DeferredResult<List<IBook>> getBooks() {
+		return DeferredResults.of(bookService.getBookRecordsAsync());
+	}
+
+	// Serves the books DataTable with server side processing, only the requested page is fetched from ES.
+	// A length of -1, which DataTables sends for all records, asks for the longest page allowed
+	@GetMapping(value = "/get/page")
+	public ResponseEntity<Map<String, Object>> getBooksPage(@RequestParam Map<String, String> params) {
+
+		Map<String, Object> response = new LinkedHashMap<>();
+		try {
+			response.put("draw", Integer.parseInt(params.getOrDefault("draw", "0")));
+			int start = Integer.parseInt(params.getOrDefault("start", "0"));
+			int length = Integer.parseInt(params.getOrDefault("length", "10"));
+			String sortColumn = params.getOrDefault("order[0][column]", "0");
+			String sortField = params.get("columns[" + sortColumn + "][data]");
+			boolean ascending = !"desc".equals(params.get("order[0][dir]"));
+
+			BookPage page = bookService.getBookRecords(start, length == -1 ? Integer.MAX_VALUE : length, sortField, ascending, params.get("search[value]"));
+
+			response.put("recordsTotal", page.getTotal());
+			response.put("recordsFiltered", page.getFiltered());
+			response.put("data", page.getBooks());
+			return ResponseEntity.ok(response);
+		} catch (IllegalArgumentException e) {
+			// Also covers malformed numbers, NumberFormatException is an IllegalArgumentException
+			response.put("error", e instanceof NumberFormatException ? "Paging parameters must be numbers." : e.getMessage());
+			return ResponseEntity.badRequest().body(response);
+		}
+	}
+
+	// Serves author and price facets for dashboards, only the buckets are returned
+	@GetMapping(value = "/get/facets")
+	public BookFacets getFacets(@RequestParam(value = "search", required = false) String search) {
+		return bookService.getFacets(search);
+	}
 
-		return books;
+	// Searches by words of title and author, filtered by isbn, author and price range, e.g.
+	// /search?text=tolkien&maxPrice=20&sort=price&size=20, the next page is requested with the returned cursor
+	@GetMapping(value = "/search")
+	public SearchResult search(BookQuery bookQuery) {
+		return bookService.search(bookQuery);
+	}
+
+	// Writes all book records as newline delimited JSON, one page of records is held in memory at a time
+	@GetMapping(value = "/get/stream", produces = NDJSON)
+	public StreamingResponseBody streamBooks() {
+		return outputStream -> {
+			try (Stream<IBook> books = bookService.streamBookRecords(); JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+				Iterator<IBook> iterator = books.iterator();
+				while (iterator.hasNext()) {
+					generator.writeObject(iterator.next());
+					generator.writeRaw('\n');
+				}
+			}
+		};
 	}
 	
+	// Looks up several books in one ES round trip, e.g. /get/batch?ids=a,b,c&fields=id,title
+	@GetMapping(value = "/get/batch")
+	public List<IBook> getBooks(@RequestParam("ids") List<String> ids, @RequestParam(value = "fields", required = false) String[] fields) {
+		return bookService.getBookRecords(ids, fields == null ? new String[0] : fields);
+	}
+
 	@GetMapping(value = "/get")
-	public IBook getBook(@RequestParam("id") String id) {
-		IBook book = bookService.getBookRecord(id);
-		return book;
+	public DeferredResult<IBook> getBook(@RequestParam("id") String id) {
+		return DeferredResults.of(bookService.getBookRecordAsync(id));
+	}
+
+	// Updates only the fields in the body, e.g. {"price": 12.5}. With a version the update fails with 409 once the record has changed
+	@PatchMapping(value = "/patch")
+	public ResponseEntity<IResultData> patchBook(@RequestParam("id") String id, @RequestParam(value = "version", required = false) Long version,
+			@RequestBody Map<String, Object> fields) {
+
+		IResultData result = bookService.patchBookRecord(id, fields, version);
+		if (result instanceof UpdateResult && ((UpdateResult) result).isConflict())
+			return ResponseEntity.status(HttpStatus.CONFLICT).body(result);
+		return ResponseEntity.ok(result);
+	}
+
+	// Imports a catalog streamed in the request body, e.g. curl -H 'Content-Type: text/csv' --data-binary @books.csv /import.
+	// The body is parsed while it is read, so uploads of any size are never buffered as a whole
+	@PostMapping(value = "/import", consumes = { NDJSON, CSV })
+	public ImportResult importBooks(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType, InputStream body) {
+		ImportFormat format = contentType.isCompatibleWith(MediaType.parseMediaType(CSV)) ? ImportFormat.CSV : ImportFormat.NDJSON;
+		return bookService.importBookRecords(body, format);
+	}
+
+	// Copies all records into a new index version built from the current mappings and switches the aliases to it
+	@PostMapping(value = "/index/reindex")
+	public ReindexResult reindex(@RequestParam("version") int version) {
+		return indexManager.reindex(version);
+	}
+
+	// Downloads all records as one gzip compressed NDJSON file read from parallel slices, e.g. /export?slices=8. It is written
+	// synchronously to the response, as a full export would outlast the async request timeout. A failure before anything
+	// was sent is answered with a 500. Once the download has started its status cannot change anymore, so the failure is
+	// passed on to the container, which aborts the connection instead of ending the body. The client then sees a broken
+	// download rather than a complete looking but truncated file
+	@GetMapping(value = "/export")
+	public void exportBooks(@RequestParam(value = "slices", required = false) Integer slices, HttpServletResponse response) throws IOException {
+		response.setContentType("application/gzip");
+		response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=books.ndjson.gz");
+		ExportResult result = slices == null ? bookExporter.export(response.getOutputStream()) : bookExporter.export(response.getOutputStream(), slices);
+		if (!result.hasError())
+			return;
+
+		if (!response.isCommitted()) {
+			response.reset();
+			response.sendError(HttpStatus.INTERNAL_SERVER_ERROR.value(), result.getMessage());
+			return;
+		}
+		throw new IOException("Export failed after the download started: " + result.getMessage());
+	}
+
+	// Writes every slice into its own compressed file on the server for downstream jobs which read the parts in parallel
+	@PostMapping(value = "/export/files")
+	public ExportResult exportBookFiles(@RequestParam(value = "slices", required = false) Integer slices) {
+		return slices == null ? bookExporter.exportFiles() : bookExporter.exportFiles(slices);
+	}
+
+	// Streams the changes of the book records, a reconnecting browser resumes after the last event it received
+	@GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public SseEmitter getBookEvents(@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+
+		BookEventEmitter emitter = new BookEventEmitter(bookChangeFeed.getTimeoutMillis());
+		BookChangeFeed.Subscription subscription = bookChangeFeed.subscribe(lastEventId, emitter);
+		emitter.onCompletion(subscription::cancel);
+		emitter.onTimeout(subscription::cancel);
+		return emitter;
+	}
+
+	@GetMapping(value = "/stats/export")
+	public Map<String, Object> getExportStats() {
+		return bookExporter.getProgress();
+	}
+
+	@GetMapping(value = "/stats/cache")
+	public Map<String, Long> getCacheStats() {
+		return bookService.getCacheStats();
+	}
+
+	@GetMapping(value = "/stats/operations")
+	public Map<String, Object> getOperationStats() {
+		return bookService.getOperationStats();
+	}
+
+	// Concurrency limit, calls in flight and circuit state of every operation
+	@GetMapping(value = "/stats/guard")
+	public Map<String, Object> getGuardStats() {
+		return clientGuard.snapshot();
+	}
+
+	@GetMapping(value = "/stats/feed")
+	public Map<String, Long> getFeedStats() {
+		return bookChangeFeed.snapshot();
+	}
+
+	// Hedge delays and counts per operation and the latency score inputs of every node
+	@GetMapping(value = "/stats/reads")
+	public Map<String, Object> getReadStats() {
+		return hedgedReader.snapshot();
 	}
 	
 }
@@ -0,0 +1,117 @@
+package com.elasticsearch.metrics;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.*;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.CheckedSupplier;
+import org.elasticsearch.common.unit.TimeValue;
+import org.springframework.stereotype.Component;
+
+/**
+ * Collects latency, server side took time, payload size and error metrics of every book service operation.
+ * Comparing the client round trip with the took time reported by ES separates cluster time from network
+ * and mapping time. Only what happens to a call is recorded here, whether it runs at all is up to the
+ * client guard the call is wrapped in.
+ */
+
+@Component
+public class BookServiceMetrics {
+
+	private final Map<Operation, OperationMetrics> operations = new EnumMap<>(Operation.class);
+
+	public BookServiceMetrics() {
+		for (Operation operation : Operation.values())
+			operations.put(operation, new OperationMetrics());
+	}
+
+	// Measures a blocking client call
+	public <T> T measure(Operation operation, long requestBytes, CheckedSupplier<T, IOException> call) throws IOException {
+		long start = System.nanoTime();
+		try {
+			T response = call.get();
+			recordSuccess(operation, start, requestBytes, response);
+			return response;
+		} catch (IOException | RuntimeException e) {
+			recordError(operation, start, e);
+			throw e;
+		}
+	}
+
+	// Measures a non blocking client call which is started by handing it the listener to complete
+	public <T> void measure(Operation operation, long requestBytes, Consumer<ActionListener<T>> call, ActionListener<T> listener) {
+		long start = System.nanoTime();
+		AtomicBoolean completed = new AtomicBoolean();
+		ActionListener<T> measuringListener = new ActionListener<T>() {
+
+			@Override
+			public void onResponse(T response) {
+				if (completed.compareAndSet(false, true)) {
+					recordSuccess(operation, start, requestBytes, response);
+					listener.onResponse(response);
+				}
+			}
+
+			@Override
+			public void onFailure(Exception e) {
+				if (completed.compareAndSet(false, true)) {
+					recordError(operation, start, e);
+					listener.onFailure(e);
+				}
+			}
+		};
+
+		try {
+			call.accept(measuringListener);
+		} catch (RuntimeException e) {
+			measuringListener.onFailure(e);
+		}
+	}
+
+	// Measures a local computation such as JSON mapping
+	public <T> T measure(Operation operation, Supplier<T> computation) {
+		long start = System.nanoTime();
+		try {
+			T result = computation.get();
+			recordSuccess(operation, start, 0, result);
+			return result;
+		} catch (RuntimeException e) {
+			recordError(operation, start, e);
+			throw e;
+		}
+	}
+
+	public Map<String, Object> snapshot() {
+		Map<String, Object> snapshot = new LinkedHashMap<>();
+		operations.forEach((operation, metrics) -> snapshot.put(operation.name().toLowerCase(), metrics.snapshot()));
+		return snapshot;
+	}
+
+	private void recordSuccess(Operation operation, long start, long requestBytes, Object response) {
+		operations.get(operation).recordSuccess(elapsedMicros(start), requestBytes, tookMicros(response));
+	}
+
+	private void recordError(Operation operation, long start, Throwable error) {
+		operations.get(operation).recordError(elapsedMicros(start), error);
+	}
+
+	private static long elapsedMicros(long start) {
+		return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+	}
+
+	// Server side took time of the responses which report it, -1 otherwise
+	private static long tookMicros(Object response) {
+		TimeValue took = null;
+		if (response instanceof SearchResponse)
+			took = ((SearchResponse) response).getTook();
+		else if (response instanceof BulkResponse)
+			took = ((BulkResponse) response).getTook();
+		return took == null ? -1 : took.micros();
+	}
+
+}
@@ -0,0 +1,87 @@
+package com.elasticsearch.metrics;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Lock free log-linear histogram of non negative values. Every power of two is split into 8 linear
+ * sub-buckets, so any recorded value is reported within 12.5% of its true value while the whole
+ * long range fits into a few hundred counters.
+ */
+
+public class Histogram {
+
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	public void record(long value) {
+		long sample = Math.max(0, value);
+		counts.incrementAndGet(indexOf(sample));
+		count.increment();
+		sum.add(sample);
+		max.accumulate(sample);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	// Returns the upper bound of the bucket holding the given percentile, in the unit values were recorded in
+	public long percentile(double percentile) {
+		long total = 0;
+		long[] snapshot = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0)
+			return 0;
+
+		long target = (long) Math.ceil(percentile / 100 * total);
+		long cumulative = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			cumulative += snapshot[i];
+			if (cumulative >= target)
+				return Math.min(upperBoundOf(i), max.get());
+		}
+		return max.get();
+	}
+
+	public Map<String, Long> snapshot() {
+		long samples = count.sum();
+		Map<String, Long> snapshot = new LinkedHashMap<>();
+		snapshot.put("count", samples);
+		snapshot.put("mean", samples == 0 ? 0 : sum.sum() / samples);
+		snapshot.put("p50", percentile(50));
+		snapshot.put("p99", percentile(99));
+		snapshot.put("p999", percentile(99.9));
+		snapshot.put("max", max.get());
+		return snapshot;
+	}
+
+	static int indexOf(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	static long upperBoundOf(int index) {
+		if (index < SUB_BUCKETS)
+			return index;
+
+		int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long subBucketWidth = 1L << (exponent - SUB_BUCKET_BITS);
+		long lowerBound = (1L << exponent) + (index % SUB_BUCKETS) * subBucketWidth;
+		return lowerBound + subBucketWidth - 1;
+	}
+
+}
@@ -0,0 +1,10 @@
+package com.elasticsearch.metrics;
+
+/**
+ * Book service operations which are measured separately, ENCODE and DECODE cover the JSON mapping of a
+ * single book record
+ */
+
+public enum Operation {
+	INDEX, GET, MULTI_GET, SEARCH, SCROLL, UPDATE, DELETE, EXISTS, BULK, DELETE_BY_QUERY, ENCODE, DECODE
+}
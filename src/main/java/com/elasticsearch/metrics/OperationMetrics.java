@@ -0,0 +1,46 @@
+package com.elasticsearch.metrics;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of a single operation: client round trip latency, server side took time, request payload
+ * sizes and error counts by exception type
+ */
+
+public class OperationMetrics {
+
+	private final Histogram latencyMicros = new Histogram();
+	private final Histogram tookMicros = new Histogram();
+	private final Histogram payloadBytes = new Histogram();
+	private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+	void recordSuccess(long elapsedMicros, long requestBytes, long serverTookMicros) {
+		latencyMicros.record(elapsedMicros);
+		if (requestBytes > 0)
+			payloadBytes.record(requestBytes);
+		if (serverTookMicros >= 0)
+			tookMicros.record(serverTookMicros);
+	}
+
+	void recordError(long elapsedMicros, Throwable error) {
+		latencyMicros.record(elapsedMicros);
+		errors.computeIfAbsent(error.getClass().getSimpleName(), type -> new LongAdder()).increment();
+	}
+
+	public Map<String, Object> snapshot() {
+		Map<String, Object> snapshot = new LinkedHashMap<>();
+		snapshot.put("latencyMicros", latencyMicros.snapshot());
+		if (tookMicros.getCount() > 0)
+			snapshot.put("tookMicros", tookMicros.snapshot());
+		if (payloadBytes.getCount() > 0)
+			snapshot.put("payloadBytes", payloadBytes.snapshot());
+
+		Map<String, Long> errorCounts = new TreeMap<>();
+		errors.forEach((type, counter) -> errorCounts.put(type, counter.sum()));
+		snapshot.put("errors", errorCounts);
+		return snapshot;
+	}
+
+}
@@ -1,7 +1,5 @@
 package com.elasticsearch.model;
 
-import java.util.UUID;
-
 import com.fasterxml.jackson.annotation.JsonInclude;
 
 /** Java Object Model for Book Record**/
@@ -9,8 +7,9 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 @JsonInclude(JsonInclude.Include.NON_EMPTY)
 public class Book implements IBook {
 	
+	// Time ordered and unique across instances, see FlakeId
 	public static String generateId(){
-		return UUID.randomUUID().toString().split("-")[0];
+		return FlakeId.next();
 	}
 	
 	public static IBook of(String isbn, String title, String author, float price){
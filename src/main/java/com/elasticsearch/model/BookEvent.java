@@ -0,0 +1,53 @@
+package com.elasticsearch.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A change of the Book Records as published on the change feed. Added and updated records carry the record, deletes and
+ * patches only its ID. A RELOAD tells subscribers that more changed than the feed describes, after bulks, purges or
+ * when a subscriber fell too far behind, and that they have to read the records again.
+ **/
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BookEvent {
+
+	public enum Type {
+		ADDED, UPDATED, DELETED, RELOAD
+	}
+
+	public static BookEvent of(long id, Type type, String bookId, IBook book) {
+		return new BookEvent(id, type, bookId, book);
+	}
+
+	private long id;
+
+	private Type type;
+
+	private String bookId;
+
+	private IBook book;
+
+	public BookEvent(long id, Type type, String bookId, IBook book) {
+		this.id = id;
+		this.type = type;
+		this.bookId = bookId;
+		this.book = book;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public String getBookId() {
+		return bookId;
+	}
+
+	public IBook getBook() {
+		return book;
+	}
+
+}
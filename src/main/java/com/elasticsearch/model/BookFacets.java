@@ -0,0 +1,82 @@
+package com.elasticsearch.model;
+
+import java.util.*;
+
+/** Aggregated view of the Book Records: record counts by author, by price interval and by price range along with price statistics **/
+
+public class BookFacets {
+
+	public static BookFacets of(long total, List<Bucket> authors, List<Bucket> priceHistogram, List<Bucket> priceRanges, Map<String, Double> priceStats) {
+		return new BookFacets(total, authors, priceHistogram, priceRanges, priceStats);
+	}
+
+	public static BookFacets empty() {
+		return new BookFacets(0, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new LinkedHashMap<>());
+	}
+
+	private long total;
+
+	private List<Bucket> authors;
+
+	private List<Bucket> priceHistogram;
+
+	private List<Bucket> priceRanges;
+
+	private Map<String, Double> priceStats;
+
+	public BookFacets(long total, List<Bucket> authors, List<Bucket> priceHistogram, List<Bucket> priceRanges, Map<String, Double> priceStats) {
+		this.total = total;
+		this.authors = authors;
+		this.priceHistogram = priceHistogram;
+		this.priceRanges = priceRanges;
+		this.priceStats = priceStats;
+	}
+
+	public long getTotal() {
+		return total;
+	}
+
+	public List<Bucket> getAuthors() {
+		return authors;
+	}
+
+	public List<Bucket> getPriceHistogram() {
+		return priceHistogram;
+	}
+
+	public List<Bucket> getPriceRanges() {
+		return priceRanges;
+	}
+
+	public Map<String, Double> getPriceStats() {
+		return priceStats;
+	}
+
+	/** A single facet value with the number of records it covers **/
+
+	public static class Bucket {
+
+		public static Bucket of(String key, long count) {
+			return new Bucket(key, count);
+		}
+
+		private String key;
+
+		private long count;
+
+		public Bucket(String key, long count) {
+			this.key = key;
+			this.count = count;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+	}
+
+}
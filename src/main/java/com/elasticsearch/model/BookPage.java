@@ -0,0 +1,41 @@
+package com.elasticsearch.model;
+
+import java.util.*;
+
+/** One page of Book Records along with the number of total and matching records **/
+
+public class BookPage {
+
+	public static BookPage of(List<IBook> books, long total, long filtered) {
+		return new BookPage(books, total, filtered);
+	}
+
+	public static BookPage empty() {
+		return new BookPage(new ArrayList<>(), 0, 0);
+	}
+
+	private List<IBook> books;
+
+	private long total;
+
+	private long filtered;
+
+	public BookPage(List<IBook> books, long total, long filtered) {
+		this.books = books;
+		this.total = total;
+		this.filtered = filtered;
+	}
+
+	public List<IBook> getBooks() {
+		return books;
+	}
+
+	public long getTotal() {
+		return total;
+	}
+
+	public long getFiltered() {
+		return filtered;
+	}
+
+}
@@ -0,0 +1,112 @@
+package com.elasticsearch.model;
+
+/**
+ * Search for Book Records: the text is matched against title and author and scores the hits, ISBN, author and
+ * price only filter them. Without a sort field hits are sorted by relevance when there is text and by ID otherwise.
+ * The cursor is the one returned with the previous page.
+ **/
+
+public class BookQuery {
+
+	private String text;
+
+	private String isbn;
+
+	private String author;
+
+	private Double minPrice;
+
+	private Double maxPrice;
+
+	private String sort;
+
+	private Boolean ascending;
+
+	private int size = 10;
+
+	private boolean trackTotalHits = true;
+
+	private String cursor;
+
+	public String getText() {
+		return text;
+	}
+
+	public void setText(String text) {
+		this.text = text;
+	}
+
+	public String getIsbn() {
+		return isbn;
+	}
+
+	public void setIsbn(String isbn) {
+		this.isbn = isbn;
+	}
+
+	public String getAuthor() {
+		return author;
+	}
+
+	public void setAuthor(String author) {
+		this.author = author;
+	}
+
+	public Double getMinPrice() {
+		return minPrice;
+	}
+
+	public void setMinPrice(Double minPrice) {
+		this.minPrice = minPrice;
+	}
+
+	public Double getMaxPrice() {
+		return maxPrice;
+	}
+
+	public void setMaxPrice(Double maxPrice) {
+		this.maxPrice = maxPrice;
+	}
+
+	public String getSort() {
+		return sort;
+	}
+
+	public void setSort(String sort) {
+		this.sort = sort;
+	}
+
+	// Null sorts relevance descending and fields ascending
+	public Boolean getAscending() {
+		return ascending;
+	}
+
+	public void setAscending(Boolean ascending) {
+		this.ascending = ascending;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public void setSize(int size) {
+		this.size = size;
+	}
+
+	public boolean isTrackTotalHits() {
+		return trackTotalHits;
+	}
+
+	public void setTrackTotalHits(boolean trackTotalHits) {
+		this.trackTotalHits = trackTotalHits;
+	}
+
+	public String getCursor() {
+		return cursor;
+	}
+
+	public void setCursor(String cursor) {
+		this.cursor = cursor;
+	}
+
+}
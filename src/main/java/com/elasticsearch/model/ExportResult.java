@@ -0,0 +1,52 @@
+package com.elasticsearch.model;
+
+import java.util.List;
+
+/**
+ * Result of exporting all Book Records with the number of slices read in parallel, the exported records, the time it
+ * took and the files written, which is empty when the export went to a single stream
+ **/
+
+public class ExportResult extends ResultData {
+
+	public static ExportResult of(boolean error, String message, int slices, long exported, long tookMillis, List<String> files) {
+		return new ExportResult(error, message, slices, exported, tookMillis, files);
+	}
+
+	private int slices;
+
+	private long exported;
+
+	private long tookMillis;
+
+	private List<String> files;
+
+	public ExportResult(boolean error, String message, int slices, long exported, long tookMillis, List<String> files) {
+		super(error, message);
+		this.slices = slices;
+		this.exported = exported;
+		this.tookMillis = tookMillis;
+		this.files = files;
+	}
+
+	public int getSlices() {
+		return slices;
+	}
+
+	public long getExported() {
+		return exported;
+	}
+
+	public long getTookMillis() {
+		return tookMillis;
+	}
+
+	public double getRecordsPerSecond() {
+		return tookMillis == 0 ? 0 : exported * 1000.0 / tookMillis;
+	}
+
+	public List<String> getFiles() {
+		return files;
+	}
+
+}
@@ -0,0 +1,48 @@
+package com.elasticsearch.model;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Flake style IDs of 96 bits: a 48 bit millisecond timestamp, a 16 bit sequence within the millisecond and a 32 bit
+ * instance number drawn once per JVM, written as 16 characters of the base64url set. The characters are used in ASCII
+ * order, so IDs compare as strings in the order they were generated and IDs written together share their prefix in
+ * the index. Generation is a single compare and set and allocates nothing but the string. When the sequence of a
+ * millisecond runs out or the clock steps back the timestamp runs ahead of the clock, so an instance never repeats an ID.
+ */
+
+public final class FlakeId {
+
+	private static final char[] ALPHABET = "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz".toCharArray();
+	private static final int SEQUENCE_BITS = 16;
+	private static final int LENGTH = 16;
+	private static final int INSTANCE = new SecureRandom().nextInt();
+	private static final AtomicLong last = new AtomicLong();
+
+	private FlakeId() {
+	}
+
+	public static String next() {
+		long now = System.currentTimeMillis() << SEQUENCE_BITS;
+		long previous;
+		long next;
+		do {
+			previous = last.get();
+			next = Math.max(previous + 1, now);
+		} while (!last.compareAndSet(previous, next));
+		return encode(next, INSTANCE);
+	}
+
+	// Writes timestamp and sequence into the first eight characters and the rest with the instance into the last eight
+	static String encode(long timestampAndSequence, int instance) {
+		char[] chars = new char[LENGTH];
+		long high = timestampAndSequence >>> SEQUENCE_BITS;
+		long low = (timestampAndSequence & ((1L << SEQUENCE_BITS) - 1)) << Integer.SIZE | (instance & 0xFFFFFFFFL);
+		for (int i = LENGTH / 2 - 1; i >= 0; i--, high >>>= 6)
+			chars[i] = ALPHABET[(int) (high & 63)];
+		for (int i = LENGTH - 1; i >= LENGTH / 2; i--, low >>>= 6)
+			chars[i] = ALPHABET[(int) (low & 63)];
+		return new String(chars);
+	}
+
+}
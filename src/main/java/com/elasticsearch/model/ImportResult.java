@@ -0,0 +1,62 @@
+package com.elasticsearch.model;
+
+import java.util.List;
+
+/**
+ * Result of importing an uploaded catalog with the number of read, imported, invalid and failed records, the time
+ * it took and the first errors
+ **/
+
+public class ImportResult extends ResultData {
+
+	public static ImportResult of(boolean error, String message, long read, long imported, long invalid, long failed, long tookMillis, List<String> errors) {
+		return new ImportResult(error, message, read, imported, invalid, failed, tookMillis, errors);
+	}
+
+	private long read;
+
+	private long imported;
+
+	private long invalid;
+
+	private long failed;
+
+	private long tookMillis;
+
+	private List<String> errors;
+
+	public ImportResult(boolean error, String message, long read, long imported, long invalid, long failed, long tookMillis, List<String> errors) {
+		super(error, message);
+		this.read = read;
+		this.imported = imported;
+		this.invalid = invalid;
+		this.failed = failed;
+		this.tookMillis = tookMillis;
+		this.errors = errors;
+	}
+
+	public long getRead() {
+		return read;
+	}
+
+	public long getImported() {
+		return imported;
+	}
+
+	public long getInvalid() {
+		return invalid;
+	}
+
+	public long getFailed() {
+		return failed;
+	}
+
+	public long getTookMillis() {
+		return tookMillis;
+	}
+
+	public List<String> getErrors() {
+		return errors;
+	}
+
+}
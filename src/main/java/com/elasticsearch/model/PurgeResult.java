@@ -0,0 +1,29 @@
+package com.elasticsearch.model;
+
+/** Result of purging all Book Records with the number of removed records and the time it took **/
+
+public class PurgeResult extends ResultData {
+
+	public static PurgeResult of(boolean error, String message, long deleted, long tookMillis) {
+		return new PurgeResult(error, message, deleted, tookMillis);
+	}
+
+	private long deleted;
+
+	private long tookMillis;
+
+	public PurgeResult(boolean error, String message, long deleted, long tookMillis) {
+		super(error, message);
+		this.deleted = deleted;
+		this.tookMillis = tookMillis;
+	}
+
+	public long getDeleted() {
+		return deleted;
+	}
+
+	public long getTookMillis() {
+		return tookMillis;
+	}
+
+}
@@ -0,0 +1,43 @@
+package com.elasticsearch.model;
+
+/** Result of reindexing the Book Records into a new index version with the number of copied records and the time it took **/
+
+public class ReindexResult extends ResultData {
+
+	public static ReindexResult of(boolean error, String message, String source, String target, long copied, long tookMillis) {
+		return new ReindexResult(error, message, source, target, copied, tookMillis);
+	}
+
+	private String source;
+
+	private String target;
+
+	private long copied;
+
+	private long tookMillis;
+
+	public ReindexResult(boolean error, String message, String source, String target, long copied, long tookMillis) {
+		super(error, message);
+		this.source = source;
+		this.target = target;
+		this.copied = copied;
+		this.tookMillis = tookMillis;
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public String getTarget() {
+		return target;
+	}
+
+	public long getCopied() {
+		return copied;
+	}
+
+	public long getTookMillis() {
+		return tookMillis;
+	}
+
+}
@@ -0,0 +1,52 @@
+package com.elasticsearch.model;
+
+import java.util.*;
+
+/**
+ * One page of a Book Record search with the number of matching records, -1 when they were not counted, and the
+ * cursor of the next page, null on the last page
+ **/
+
+public class SearchResult extends ResultData {
+
+	public static SearchResult of(String message, List<IBook> books, long total, String cursor, long tookMillis) {
+		return new SearchResult(false, message, books, total, cursor, tookMillis);
+	}
+
+	public static SearchResult error(String message) {
+		return new SearchResult(true, message, new ArrayList<>(), 0, null, 0);
+	}
+
+	private List<IBook> books;
+
+	private long total;
+
+	private String cursor;
+
+	private long tookMillis;
+
+	public SearchResult(boolean error, String message, List<IBook> books, long total, String cursor, long tookMillis) {
+		super(error, message);
+		this.books = books;
+		this.total = total;
+		this.cursor = cursor;
+		this.tookMillis = tookMillis;
+	}
+
+	public List<IBook> getBooks() {
+		return books;
+	}
+
+	public long getTotal() {
+		return total;
+	}
+
+	public String getCursor() {
+		return cursor;
+	}
+
+	public long getTookMillis() {
+		return tookMillis;
+	}
+
+}
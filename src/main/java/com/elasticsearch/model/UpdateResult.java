@@ -0,0 +1,33 @@
+package com.elasticsearch.model;
+
+/** Result of updating a Book Record with the version it has afterwards and whether it failed on a version conflict **/
+
+public class UpdateResult extends ResultData {
+
+	public static UpdateResult of(boolean error, String message, long version) {
+		return new UpdateResult(error, false, message, version);
+	}
+
+	public static UpdateResult conflict(String message) {
+		return new UpdateResult(true, true, message, 0);
+	}
+
+	private boolean conflict;
+
+	private long version;
+
+	public UpdateResult(boolean error, boolean conflict, String message, long version) {
+		super(error, message);
+		this.conflict = conflict;
+		this.version = version;
+	}
+
+	public boolean isConflict() {
+		return conflict;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.elasticsearch.resilience;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrency limit of a single operation which adapts to the observed latency with additive increase and
+ * multiplicative decrease. A response slower than the tolerated multiple of the long term average latency, or
+ * a dropped one, shrinks the limit, while responses at normal latency grow it by about one per limit worth of
+ * samples as long as the limit is actually used. After a decrease the requests already in flight have to
+ * complete before the next one, so a single slow burst only shrinks the limit once.
+ */
+
+class AdaptiveLimit {
+
+	private static final int WARMUP_SAMPLES = 20;
+	private static final double BASELINE_WEIGHT = 0.02;
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final double tolerance;
+	private final double backoffRatio;
+
+	private double limit;
+	private int inFlight;
+	private int decreaseHold;
+	private double baselineNanos;
+	private long samples;
+
+	AdaptiveLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, double backoffRatio) {
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.tolerance = tolerance;
+		this.backoffRatio = backoffRatio;
+		this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+	}
+
+	synchronized boolean tryAcquire() {
+		if (inFlight >= (int) limit)
+			return false;
+		inFlight++;
+		return true;
+	}
+
+	// Waits up to timeoutNanos for a permit to become free
+	synchronized boolean acquire(long timeoutNanos) throws InterruptedException {
+		long deadline = System.nanoTime() + timeoutNanos;
+		while (inFlight >= (int) limit) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0)
+				return false;
+			TimeUnit.NANOSECONDS.timedWait(this, remaining);
+		}
+		inFlight++;
+		return true;
+	}
+
+	// Returns a permit and feeds its latency into the limit, dropped means timed out or rejected by an overloaded cluster
+	synchronized void release(long latencyNanos, boolean dropped) {
+		inFlight--;
+		notifyAll();
+		boolean held = decreaseHold > 0;
+		if (held)
+			decreaseHold--;
+
+		boolean slow = samples >= WARMUP_SAMPLES && latencyNanos > tolerance * baselineNanos;
+		if (!dropped) {
+			baselineNanos = samples == 0 ? latencyNanos : baselineNanos + BASELINE_WEIGHT * (latencyNanos - baselineNanos);
+			samples++;
+		}
+
+		if (dropped || slow) {
+			if (!held) {
+				limit = Math.max(minLimit, limit * backoffRatio);
+				decreaseHold = inFlight;
+			}
+		} else if ((inFlight + 1) * 2 >= limit) {
+			limit = Math.min(maxLimit, limit + 1 / limit);
+		}
+	}
+
+	// Returns a permit whose request was never sent
+	synchronized void cancel() {
+		inFlight--;
+		notifyAll();
+	}
+
+	synchronized int getLimit() {
+		return (int) limit;
+	}
+
+	synchronized int getInFlight() {
+		return inFlight;
+	}
+
+}
@@ -0,0 +1,115 @@
+package com.elasticsearch.resilience;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Count based circuit breaker over the outcomes of the last calls of an operation. The circuit opens once the
+ * share of failed or of slow calls in the window crosses its threshold, and then rejects every call until the
+ * open period has passed. A few trial calls are let through afterwards, the circuit closes again when all of
+ * them succeed in time and opens again as soon as one does not.
+ */
+
+class CircuitBreaker {
+
+	enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final int minimumCalls;
+	private final double failureRateThreshold;
+	private final double slowCallRateThreshold;
+	private final long slowCallNanos;
+	private final long openNanos;
+	private final int halfOpenCalls;
+	private final LongSupplier clock;
+
+	private final byte[] window;
+	private int position;
+	private int calls;
+	private int failures;
+	private int slowCalls;
+
+	private State state = State.CLOSED;
+	private long openedAt;
+	private int halfOpenPermits;
+	private int halfOpenSuccesses;
+
+	CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, double slowCallRateThreshold, long slowCallNanos, long openNanos,
+			int halfOpenCalls, LongSupplier clock) {
+		this.window = new byte[windowSize];
+		this.minimumCalls = Math.min(windowSize, minimumCalls);
+		this.failureRateThreshold = failureRateThreshold;
+		this.slowCallRateThreshold = slowCallRateThreshold;
+		this.slowCallNanos = slowCallNanos;
+		this.openNanos = openNanos;
+		this.halfOpenCalls = halfOpenCalls;
+		this.clock = clock;
+	}
+
+	synchronized boolean tryAcquire() {
+		if (state == State.OPEN) {
+			if (clock.getAsLong() - openedAt < openNanos)
+				return false;
+			state = State.HALF_OPEN;
+			halfOpenPermits = halfOpenCalls;
+			halfOpenSuccesses = 0;
+		}
+
+		if (state == State.HALF_OPEN) {
+			if (halfOpenPermits == 0)
+				return false;
+			halfOpenPermits--;
+		}
+		return true;
+	}
+
+	// Returns a permit whose call was never made
+	synchronized void cancel() {
+		if (state == State.HALF_OPEN)
+			halfOpenPermits++;
+	}
+
+	synchronized void record(long latencyNanos, boolean failure) {
+		boolean slow = latencyNanos >= slowCallNanos;
+
+		if (state == State.HALF_OPEN) {
+			if (failure || slow)
+				open();
+			else if (++halfOpenSuccesses >= halfOpenCalls)
+				close();
+		} else if (state == State.CLOSED) {
+			byte outcome = (byte) ((failure ? 1 : 0) | (slow ? 2 : 0));
+			if (calls == window.length) {
+				failures -= window[position] & 1;
+				slowCalls -= window[position] >> 1;
+			} else {
+				calls++;
+			}
+			window[position] = outcome;
+			position = (position + 1) % window.length;
+			failures += outcome & 1;
+			slowCalls += outcome >> 1;
+
+			if (calls >= minimumCalls && (failures >= failureRateThreshold * calls || slowCalls >= slowCallRateThreshold * calls))
+				open();
+		}
+	}
+
+	synchronized State getState() {
+		return state;
+	}
+
+	private void open() {
+		state = State.OPEN;
+		openedAt = clock.getAsLong();
+	}
+
+	private void close() {
+		state = State.CLOSED;
+		position = 0;
+		calls = 0;
+		failures = 0;
+		slowCalls = 0;
+	}
+
+}
@@ -0,0 +1,288 @@
+package com.elasticsearch.resilience;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import javax.annotation.*;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.common.CheckedSupplier;
+import org.elasticsearch.rest.RestStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.elasticsearch.metrics.Operation;
+
+/**
+ * Protects ES and the application from each other: every operation type has its own bulkhead whose size
+ * adapts to the observed latency and its own circuit breaker, so a slow or failing cluster is answered with
+ * fast rejections instead of piling up request threads. Non blocking calls are additionally failed once
+ * their deadline passes, blocking calls are bounded by the client socket timeout. Long running operations
+ * such as bulks have neither a deadline nor a slow call threshold. Calls are guarded by wrapping them before
+ * they are handed to the metrics, so a rejected call is measured as a failed one. Batch callers which would
+ * rather wait than fail, such as scrolls and bulks, wait a bounded time for a free permit and for an open
+ * circuit to let trial calls through instead of being rejected.
+ */
+
+@Component
+public class ClientGuard {
+
+	private static final long BREAKER_POLL_MILLIS = 50;
+
+	@Value("${elasticsearch.guard.enabled:true}")
+	private boolean enabled;
+	@Value("${elasticsearch.guard.initial-limit:20}")
+	private int initialLimit;
+	@Value("${elasticsearch.guard.min-limit:2}")
+	private int minLimit;
+	@Value("${elasticsearch.guard.max-limit:200}")
+	private int maxLimit;
+	@Value("${elasticsearch.guard.latency-tolerance:2.0}")
+	private double latencyTolerance;
+	@Value("${elasticsearch.guard.backoff-ratio:0.9}")
+	private double backoffRatio;
+	@Value("${elasticsearch.guard.timeout-millis:5000}")
+	private long timeoutMillis;
+	@Value("${elasticsearch.guard.batch-wait-millis:30000}")
+	private long batchWaitMillis;
+	@Value("${elasticsearch.guard.long-running-operations:BULK,DELETE_BY_QUERY}")
+	private String[] longRunningOperations;
+	@Value("${elasticsearch.guard.breaker.window-size:50}")
+	private int breakerWindowSize;
+	@Value("${elasticsearch.guard.breaker.minimum-calls:20}")
+	private int breakerMinimumCalls;
+	@Value("${elasticsearch.guard.breaker.failure-rate:0.5}")
+	private double breakerFailureRate;
+	@Value("${elasticsearch.guard.breaker.slow-call-rate:0.8}")
+	private double breakerSlowCallRate;
+	@Value("${elasticsearch.guard.breaker.slow-call-millis:2000}")
+	private long breakerSlowCallMillis;
+	@Value("${elasticsearch.guard.breaker.open-millis:5000}")
+	private long breakerOpenMillis;
+	@Value("${elasticsearch.guard.breaker.half-open-calls:5}")
+	private int breakerHalfOpenCalls;
+
+	private final Map<Operation, AdaptiveLimit> limits = new EnumMap<>(Operation.class);
+	private final Map<Operation, CircuitBreaker> breakers = new EnumMap<>(Operation.class);
+	private final Set<Operation> longRunning = EnumSet.noneOf(Operation.class);
+	private ScheduledExecutorService deadlines;
+
+	@PostConstruct
+	private void init() {
+		for (String operation : longRunningOperations)
+			longRunning.add(Operation.valueOf(operation.trim()));
+
+		for (Operation operation : Operation.values()) {
+			limits.put(operation, new AdaptiveLimit(initialLimit, minLimit, maxLimit, latencyTolerance, backoffRatio));
+			long slowCallNanos = longRunning.contains(operation) ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(breakerSlowCallMillis);
+			breakers.put(operation, new CircuitBreaker(breakerWindowSize, breakerMinimumCalls, breakerFailureRate, breakerSlowCallRate, slowCallNanos,
+					TimeUnit.MILLISECONDS.toNanos(breakerOpenMillis), breakerHalfOpenCalls, System::nanoTime));
+		}
+
+		deadlines = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "es-client-deadlines");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@PreDestroy
+	private void destroy() {
+		deadlines.shutdownNow();
+	}
+
+	// Guards a blocking call, a call the guard rejects fails with a RejectedCallException and is never made
+	public <T> CheckedSupplier<T, IOException> wrap(Operation operation, CheckedSupplier<T, IOException> call) {
+		return () -> run(acquire(operation, 0), call);
+	}
+
+	// Guards a blocking call of a batch reader, which waits for a free permit while the operation is at its limit
+	// or its circuit is open
+	public <T> CheckedSupplier<T, IOException> wrapWaiting(Operation operation, CheckedSupplier<T, IOException> call) {
+		return () -> run(acquire(operation, TimeUnit.MILLISECONDS.toNanos(batchWaitMillis)), call);
+	}
+
+	// Guards a non blocking call which is started by handing it the listener to complete. The listener is completed
+	// exactly once, with a DeadlineExceededException when the response does not arrive in time
+	public <T> Consumer<ActionListener<T>> wrap(Operation operation, Consumer<ActionListener<T>> call) {
+		return guard(operation, 0, call);
+	}
+
+	// Guards a non blocking call of a batch writer such as the bulk processor. Starting the call blocks the calling
+	// thread while it waits for a free permit, which holds back the producer instead of failing the whole batch
+	public <T> Consumer<ActionListener<T>> wrapWaiting(Operation operation, Consumer<ActionListener<T>> call) {
+		return guard(operation, TimeUnit.MILLISECONDS.toNanos(batchWaitMillis), call);
+	}
+
+	public Map<String, Object> snapshot() {
+		Map<String, Object> snapshot = new LinkedHashMap<>();
+		snapshot.put("enabled", enabled);
+		if (!enabled)
+			return snapshot;
+
+		for (Operation operation : Operation.values()) {
+			if (operation == Operation.ENCODE || operation == Operation.DECODE)
+				continue;
+			Map<String, Object> operationSnapshot = new LinkedHashMap<>();
+			operationSnapshot.put("limit", limits.get(operation).getLimit());
+			operationSnapshot.put("inFlight", limits.get(operation).getInFlight());
+			operationSnapshot.put("circuit", breakers.get(operation).getState().name());
+			snapshot.put(operation.name().toLowerCase(), operationSnapshot);
+		}
+		return snapshot;
+	}
+
+	private <T> Consumer<ActionListener<T>> guard(Operation operation, long waitNanos, Consumer<ActionListener<T>> call) {
+		return listener -> {
+			Permit permit;
+			try {
+				permit = acquire(operation, waitNanos);
+			} catch (IOException e) {
+				listener.onFailure(e);
+				return;
+			}
+
+			AtomicBoolean completed = new AtomicBoolean();
+			ScheduledFuture<?> deadline = scheduleDeadline(operation, () -> {
+				if (completed.compareAndSet(false, true))
+					listener.onFailure(new DeadlineExceededException(operation + " request did not complete in time"));
+			});
+
+			ActionListener<T> guardedListener = new ActionListener<T>() {
+
+				@Override
+				public void onResponse(T response) {
+					permit.release(null);
+					if (deadline != null)
+						deadline.cancel(false);
+					if (completed.compareAndSet(false, true))
+						listener.onResponse(response);
+				}
+
+				@Override
+				public void onFailure(Exception e) {
+					permit.release(e);
+					if (deadline != null)
+						deadline.cancel(false);
+					if (completed.compareAndSet(false, true))
+						listener.onFailure(e);
+				}
+			};
+
+			try {
+				call.accept(guardedListener);
+			} catch (RuntimeException e) {
+				guardedListener.onFailure(e);
+			}
+		};
+	}
+
+	// Takes a permit for one call of the operation, waiting up to waitNanos in total while its circuit is open or
+	// the operation is at its limit. Without a wait an open circuit or a full bulkhead rejects the call right away
+	private Permit acquire(Operation operation, long waitNanos) throws IOException {
+		if (!enabled)
+			return new Permit(null, null, 0);
+
+		long waitUntil = System.nanoTime() + waitNanos;
+		CircuitBreaker breaker = breakers.get(operation);
+		while (!breaker.tryAcquire()) {
+			long remaining = waitUntil - System.nanoTime();
+			if (remaining <= 0)
+				throw new RejectedCallException("Circuit of " + operation + " requests is open");
+			try {
+				Thread.sleep(Math.min(BREAKER_POLL_MILLIS, TimeUnit.NANOSECONDS.toMillis(remaining) + 1));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the circuit of " + operation + " requests");
+			}
+		}
+
+		AdaptiveLimit limit = limits.get(operation);
+		boolean acquired;
+		try {
+			acquired = waitNanos > 0 ? limit.acquire(Math.max(0, waitUntil - System.nanoTime())) : limit.tryAcquire();
+		} catch (InterruptedException e) {
+			breaker.cancel();
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a permit of " + operation + " requests");
+		}
+		if (!acquired) {
+			breaker.cancel();
+			throw new RejectedCallException(operation + " requests are at their concurrency limit of " + limit.getLimit());
+		}
+		return new Permit(limit, breaker, hasDeadline(operation) ? TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : 0);
+	}
+
+	private static <T> T run(Permit permit, CheckedSupplier<T, IOException> call) throws IOException {
+		try {
+			T response = call.get();
+			permit.release(null);
+			return response;
+		} catch (IOException | RuntimeException e) {
+			permit.release(e);
+			throw e;
+		}
+	}
+
+	// Runs the task when a non blocking call of the operation is still open at its deadline, null when it has none
+	private ScheduledFuture<?> scheduleDeadline(Operation operation, Runnable task) {
+		if (!enabled || !hasDeadline(operation))
+			return null;
+		return deadlines.schedule(task, timeoutMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private boolean hasDeadline(Operation operation) {
+		return timeoutMillis > 0 && !longRunning.contains(operation);
+	}
+
+	// Timeouts, connection problems, server errors and overload rejections count against the cluster, client errors do not
+	static boolean isFailure(Throwable error) {
+		if (error == null)
+			return false;
+		if (error instanceof ElasticsearchException)
+			return isFailure(((ElasticsearchException) error).status());
+		if (error instanceof ResponseException)
+			return isFailure(RestStatus.fromCode(((ResponseException) error).getResponse().getStatusLine().getStatusCode()));
+		return error instanceof IOException;
+	}
+
+	private static boolean isFailure(RestStatus status) {
+		return status == null || status.getStatus() >= 500 || status == RestStatus.TOO_MANY_REQUESTS;
+	}
+
+	/** Permit of a single call which feeds the outcome of the call back into the limit and the circuit breaker **/
+
+	private final class Permit {
+
+		private final AdaptiveLimit limit;
+		private final CircuitBreaker breaker;
+		private final long timeoutNanos;
+		private final long start = System.nanoTime();
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private Permit(AdaptiveLimit limit, CircuitBreaker breaker, long timeoutNanos) {
+			this.limit = limit;
+			this.breaker = breaker;
+			this.timeoutNanos = timeoutNanos;
+		}
+
+		// Releases the permit with the error the call failed with, or null when it succeeded. Only the first release counts
+		private void release(Throwable error) {
+			if (limit == null || !released.compareAndSet(false, true))
+				return;
+
+			long latencyNanos = System.nanoTime() - start;
+			boolean failure = isFailure(error);
+			boolean late = timeoutNanos > 0 && latencyNanos > timeoutNanos;
+			limit.release(latencyNanos, failure || late);
+			breaker.record(latencyNanos, failure);
+		}
+
+	}
+
+}
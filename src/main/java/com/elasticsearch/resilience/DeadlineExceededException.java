@@ -0,0 +1,18 @@
+package com.elasticsearch.resilience;
+
+import java.io.IOException;
+
+/**
+ * Reported to the caller when ES has not answered a request within its deadline. The request itself may
+ * still complete on the cluster.
+ */
+
+public class DeadlineExceededException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	public DeadlineExceededException(String message) {
+		super(message);
+	}
+
+}
@@ -0,0 +1,134 @@
+package com.elasticsearch.resilience;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import javax.annotation.*;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.elasticsearch.config.NodeClients;
+import com.elasticsearch.metrics.Operation;
+
+/**
+ * Sends idempotent reads through a client per configured host, so a single slow node does not hold up every read
+ * which happens to be sent to it. With a single host the shared client is that client and duplicates go to other
+ * shard copies. Every hedged operation has its own hedge delay, the node scores are shared by
+ * all of them. Reads of operations which are not hedged, or all reads when hedging is disabled, go through the
+ * shared client as before.
+ */
+
+@Component
+public class HedgedReader {
+
+	@Value("${elasticsearch.hedge.enabled:true}")
+	private boolean enabled;
+	@Value("${elasticsearch.hedge.operations:GET,SEARCH}")
+	private String[] hedgedOperations;
+	@Value("${elasticsearch.hedge.percentile:95}")
+	private double percentile;
+	@Value("${elasticsearch.hedge.initial-delay-millis:50}")
+	private long initialDelayMillis;
+	@Value("${elasticsearch.hedge.min-delay-millis:5}")
+	private long minDelayMillis;
+	@Value("${elasticsearch.hedge.min-samples:100}")
+	private int minSamples;
+	@Value("${elasticsearch.hedge.window-size:1000}")
+	private int windowSize;
+	@Value("${elasticsearch.hedge.max-hedge-ratio:0.1}")
+	private double maxHedgeRatio;
+	@Value("${elasticsearch.hedge.latency-decay:0.2}")
+	private double latencyDecay;
+
+	private final RestHighLevelClient restHighLevelClient;
+	private final NodeClients nodeClients;
+	private final List<ReadNode> nodes = new ArrayList<>();
+	private final Map<Operation, Hedger> hedgers = new EnumMap<>(Operation.class);
+	private ScheduledExecutorService scheduler;
+
+	public HedgedReader(RestHighLevelClient restHighLevelClient, NodeClients nodeClients) {
+		this.restHighLevelClient = restHighLevelClient;
+		this.nodeClients = nodeClients;
+	}
+
+	@PostConstruct
+	private void init() {
+		if (!enabled)
+			return;
+
+		nodeClients.getClients().forEach((name, client) -> nodes.add(new ReadNode(name, client, latencyDecay)));
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "es-hedged-reads");
+			thread.setDaemon(true);
+			return thread;
+		});
+		for (String operation : hedgedOperations)
+			hedgers.put(Operation.valueOf(operation.trim()), new Hedger(nodes, percentile, TimeUnit.MILLISECONDS.toNanos(initialDelayMillis),
+					TimeUnit.MILLISECONDS.toNanos(minDelayMillis), minSamples, windowSize, maxHedgeRatio, scheduler));
+	}
+
+	@PreDestroy
+	private void destroy() {
+		if (scheduler != null)
+			scheduler.shutdownNow();
+	}
+
+	// Starts a read of the operation, the listener is completed exactly once with the first response
+	public <T> void read(Operation operation, Call<T> call, ActionListener<T> listener) {
+		Hedger hedger = hedgers.get(operation);
+		if (hedger == null) {
+			call.start(restHighLevelClient, null, listener);
+			return;
+		}
+		hedger.read(call, listener);
+	}
+
+	// Blocks until the first response arrived, every attempt is bounded by the client socket timeout
+	public <T> T read(Operation operation, Call<T> call) throws IOException {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		read(operation, call, ActionListener.wrap(future::complete, future::completeExceptionally));
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(e.getMessage());
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new IOException(cause.getMessage(), cause);
+		}
+	}
+
+	public Map<String, Object> snapshot() {
+		Map<String, Object> snapshot = new LinkedHashMap<>();
+		snapshot.put("enabled", enabled);
+		hedgers.forEach((operation, hedger) -> snapshot.put(operation.name(), hedger.snapshot()));
+
+		Map<String, Object> nodeStats = new LinkedHashMap<>();
+		for (ReadNode node : nodes) {
+			Map<String, Object> stats = new LinkedHashMap<>();
+			stats.put("latencyMicros", node.getLatencyMicros());
+			stats.put("inFlight", node.getInFlight());
+			stats.put("reads", node.getReads());
+			nodeStats.put(node.getName(), stats);
+		}
+		snapshot.put("nodes", nodeStats);
+		return snapshot;
+	}
+
+	/** A read which is sent through the given client, with the shard copy preference to set on its request when not null **/
+
+	@FunctionalInterface
+	public interface Call<T> {
+
+		void start(RestHighLevelClient client, String preference, ActionListener<T> listener);
+	}
+
+}
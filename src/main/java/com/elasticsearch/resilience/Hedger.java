@@ -0,0 +1,237 @@
+package com.elasticsearch.resilience;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.elasticsearch.action.ActionListener;
+
+import com.elasticsearch.metrics.Histogram;
+
+/**
+ * Sends a read to the best scored node and, when it has not answered once the hedge delay passed, a duplicate to
+ * another node. Whichever response arrives first completes the read, the other one is dropped. The delay is the
+ * configured percentile of the response times of recent reads, so only the slowest few percent of reads are
+ * duplicated, and a token budget caps the duplicates at a share of all reads so hedging cannot double the load
+ * of a cluster which is slow as a whole. A read failing in a way another node may not fail is sent to another
+ * node right away. Nodes are picked at random weighted by the inverse of their score, which keeps sending a
+ * slow node a few reads so its score recovers once it is fast again.
+ */
+
+class Hedger {
+
+	private static final long TOKEN = 1000;
+	private static final long MAX_TOKENS = 10 * TOKEN;
+
+	private final List<ReadNode> nodes;
+	private final double percentile;
+	private final long initialDelayNanos;
+	private final long minDelayNanos;
+	private final int minSamples;
+	private final int windowSize;
+	private final long tokensPerRead;
+	private final ScheduledExecutorService scheduler;
+
+	private volatile Histogram current = new Histogram();
+	private volatile Histogram previous = new Histogram();
+	private final AtomicLong tokens = new AtomicLong(MAX_TOKENS);
+	private final AtomicLong reads = new AtomicLong();
+	private final AtomicLong hedges = new AtomicLong();
+	private final AtomicLong hedgeWins = new AtomicLong();
+	private final AtomicLong failovers = new AtomicLong();
+
+	Hedger(List<ReadNode> nodes, double percentile, long initialDelayNanos, long minDelayNanos, int minSamples, int windowSize, double maxHedgeRatio,
+			ScheduledExecutorService scheduler) {
+		this.nodes = nodes;
+		this.percentile = percentile;
+		this.initialDelayNanos = initialDelayNanos;
+		this.minDelayNanos = minDelayNanos;
+		this.minSamples = minSamples;
+		this.windowSize = Math.max(windowSize, minSamples);
+		this.tokensPerRead = (long) (maxHedgeRatio * TOKEN);
+		this.scheduler = scheduler;
+	}
+
+	<T> void read(HedgedReader.Call<T> call, ActionListener<T> listener) {
+		reads.incrementAndGet();
+		tokens.accumulateAndGet(tokensPerRead, (available, added) -> Math.min(available + added, MAX_TOKENS));
+		new Race<>(call, listener).start();
+	}
+
+	// The delay after which a read is duplicated, until enough reads were seen it is the configured initial delay
+	long getDelayNanos() {
+		Histogram window = current.getCount() >= minSamples ? current : previous;
+		if (window.getCount() < minSamples)
+			return initialDelayNanos;
+		return Math.max(minDelayNanos, window.percentile(percentile));
+	}
+
+	Map<String, Object> snapshot() {
+		Map<String, Object> snapshot = new LinkedHashMap<>();
+		snapshot.put("reads", reads.get());
+		snapshot.put("hedges", hedges.get());
+		snapshot.put("hedgeWins", hedgeWins.get());
+		snapshot.put("failovers", failovers.get());
+		snapshot.put("delayMicros", TimeUnit.NANOSECONDS.toMicros(getDelayNanos()));
+		return snapshot;
+	}
+
+	// Collects the response times of the last reads, the window is renewed once it is full so the delay follows the cluster
+	private void record(long nanos) {
+		Histogram window = current;
+		window.record(nanos);
+		if (window.getCount() >= windowSize) {
+			synchronized (this) {
+				if (current == window) {
+					previous = window;
+					current = new Histogram();
+				}
+			}
+		}
+	}
+
+	private boolean takeToken() {
+		long available;
+		do {
+			available = tokens.get();
+			if (available < TOKEN)
+				return false;
+		} while (!tokens.compareAndSet(available, available - TOKEN));
+		return true;
+	}
+
+	// Picks a node at random weighted by the inverse of its score, never the excluded one unless it is the only node
+	private ReadNode select(ReadNode excluded) {
+		double[] weights = new double[nodes.size()];
+		double sum = 0;
+		for (int i = 0; i < weights.length; i++) {
+			ReadNode node = nodes.get(i);
+			weights[i] = node == excluded && nodes.size() > 1 ? 0 : 1 / node.score();
+			sum += weights[i];
+		}
+
+		double target = ThreadLocalRandom.current().nextDouble(sum);
+		for (int i = 0; i < weights.length; i++) {
+			target -= weights[i];
+			if (weights[i] > 0 && target < 0)
+				return nodes.get(i);
+		}
+		return nodes.get(nodes.size() - 1);
+	}
+
+	/** The primary read of one call and its duplicate, only the first response or the last failure completes the listener **/
+
+	private final class Race<T> {
+
+		private final HedgedReader.Call<T> call;
+		private final ActionListener<T> listener;
+		private ReadNode primary;
+		private int running;
+		private boolean hedged;
+		private boolean settled;
+		private Exception error;
+		private volatile ScheduledFuture<?> timer;
+
+		private Race(HedgedReader.Call<T> call, ActionListener<T> listener) {
+			this.call = call;
+			this.listener = listener;
+		}
+
+		private void start() {
+			synchronized (this) {
+				primary = select(null);
+				running = 1;
+			}
+			attempt(primary, null, false);
+			timer = scheduler.schedule(() -> hedge(false), getDelayNanos(), TimeUnit.NANOSECONDS);
+			if (isSettled())
+				timer.cancel(false);
+		}
+
+		// Sends the duplicate, through another node which prefers its local shard copies, or when there is no other
+		// node with a preference of its own, which makes ES pick the shard copies anew
+		private void hedge(boolean failover) {
+			ReadNode node;
+			synchronized (this) {
+				if (settled || hedged || !failover && !takeToken())
+					return;
+				hedged = true;
+				running++;
+				node = select(primary);
+			}
+
+			(failover ? failovers : hedges).incrementAndGet();
+			attempt(node, node != primary ? "_local" : "hedge-" + ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE), true);
+		}
+
+		private void attempt(ReadNode node, String preference, boolean duplicate) {
+			long start = System.nanoTime();
+			node.started();
+			try {
+				call.start(node.getClient(), preference, new ActionListener<T>() {
+
+					@Override
+					public void onResponse(T response) {
+						long nanos = System.nanoTime() - start;
+						node.completed(nanos, false);
+						record(nanos);
+						complete(duplicate, response, null);
+					}
+
+					@Override
+					public void onFailure(Exception e) {
+						node.completed(System.nanoTime() - start, ClientGuard.isFailure(e));
+						complete(duplicate, null, e);
+					}
+				});
+			} catch (RuntimeException e) {
+				node.completed(System.nanoTime() - start, true);
+				complete(duplicate, null, e);
+			}
+		}
+
+		private void complete(boolean duplicate, T response, Exception e) {
+			boolean failover = false;
+			Exception failure = null;
+			synchronized (this) {
+				running--;
+				if (settled)
+					return;
+
+				if (e == null) {
+					settled = true;
+				} else {
+					if (error == null)
+						error = e;
+					if (!hedged && ClientGuard.isFailure(e))
+						failover = true;
+					else if (running == 0) {
+						settled = true;
+						failure = error;
+					}
+				}
+			}
+
+			if (failover) {
+				hedge(true);
+				return;
+			}
+
+			ScheduledFuture<?> pending = timer;
+			if (pending != null)
+				pending.cancel(false);
+			if (failure != null) {
+				listener.onFailure(failure);
+			} else if (e == null) {
+				if (duplicate)
+					hedgeWins.incrementAndGet();
+				listener.onResponse(response);
+			}
+		}
+
+		private synchronized boolean isSettled() {
+			return settled;
+		}
+	}
+
+}
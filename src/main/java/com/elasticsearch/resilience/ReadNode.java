@@ -0,0 +1,68 @@
+package com.elasticsearch.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.*;
+
+import org.elasticsearch.client.RestHighLevelClient;
+
+/**
+ * A node reads can be sent to, scored by an exponentially weighted moving average of its response times
+ * multiplied by the reads it still has in flight. A node which stalls therefore looks slower with every
+ * read piling up on it, long before the first of them returns. Failures count as twice the average, so a
+ * node which keeps failing fast does not look like the fastest one.
+ */
+
+class ReadNode {
+
+	private static final long INITIAL_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final String name;
+	private final RestHighLevelClient client;
+	private final double decay;
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicLong reads = new AtomicLong();
+	private double latencyNanos = INITIAL_LATENCY_NANOS;
+
+	ReadNode(String name, RestHighLevelClient client, double decay) {
+		this.name = name;
+		this.client = client;
+		this.decay = decay;
+	}
+
+	String getName() {
+		return name;
+	}
+
+	RestHighLevelClient getClient() {
+		return client;
+	}
+
+	void started() {
+		inFlight.incrementAndGet();
+		reads.incrementAndGet();
+	}
+
+	synchronized void completed(long nanos, boolean failure) {
+		inFlight.decrementAndGet();
+		double sample = failure ? Math.max(nanos, 2 * latencyNanos) : nanos;
+		latencyNanos += decay * (sample - latencyNanos);
+	}
+
+	// Lower is better
+	synchronized double score() {
+		return latencyNanos * (inFlight.get() + 1);
+	}
+
+	synchronized long getLatencyMicros() {
+		return TimeUnit.NANOSECONDS.toMicros((long) latencyNanos);
+	}
+
+	int getInFlight() {
+		return inFlight.get();
+	}
+
+	long getReads() {
+		return reads.get();
+	}
+
+}
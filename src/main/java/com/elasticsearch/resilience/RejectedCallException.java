@@ -0,0 +1,18 @@
+package com.elasticsearch.resilience;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of sending a request to ES when the operation is at its concurrency limit or its circuit
+ * is open. Nothing has been sent, so the call can safely be retried later.
+ */
+
+public class RejectedCallException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	public RejectedCallException(String message) {
+		super(message);
+	}
+
+}
@@ -0,0 +1,118 @@
+package com.elasticsearch.service;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.elasticsearch.model.*;
+
+/**
+ * Bounded LRU cache of book records by ID whose entries expire after a fixed time to live. Every entry
+ * carries the document version it was read or written at, and an entry is only ever replaced by a newer
+ * version, so a slow read can never overwrite the result of a later write. Deletes and patches leave a
+ * versioned tombstone behind for the same reason.
+ */
+
+class BookCache {
+
+	private final int maxEntries;
+	private final long ttlNanos;
+	private final Map<String, Entry> entries;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong expirations = new AtomicLong();
+
+	BookCache(int maxEntries, long ttlMillis) {
+		this.maxEntries = maxEntries;
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				if (size() <= BookCache.this.maxEntries)
+					return false;
+				evictions.incrementAndGet();
+				return true;
+			}
+		};
+	}
+
+	// Returns a copy of the cached book, or null when it is absent, expired or deleted
+	synchronized IBook get(String id) {
+		Entry entry = entries.get(id);
+		if (entry != null && System.nanoTime() - entry.createdAt > ttlNanos) {
+			entries.remove(id);
+			expirations.incrementAndGet();
+			entry = null;
+		}
+
+		if (entry == null || entry.book == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+
+		hits.incrementAndGet();
+		return copyOf(entry.book);
+	}
+
+	// A tombstone is filled by a record of its own version, as a patched record is only known once it is read back
+	synchronized void put(String id, IBook book, long version) {
+		Entry current = entries.get(id);
+		if (current != null && (current.version > version || current.version == version && current.book != null))
+			return;
+		entries.put(id, new Entry(copyOf(book), version));
+	}
+
+	synchronized void remove(String id, long version) {
+		Entry current = entries.get(id);
+		if (current != null && current.version >= version)
+			return;
+		entries.put(id, new Entry(null, version));
+	}
+
+	synchronized void invalidate(String id) {
+		entries.remove(id);
+	}
+
+	synchronized void clear() {
+		entries.clear();
+	}
+
+	synchronized Map<String, Long> stats() {
+		Map<String, Long> stats = new LinkedHashMap<>();
+		stats.put("size", (long) entries.size());
+		stats.put("maxEntries", (long) maxEntries);
+		stats.put("hits", hits.get());
+		stats.put("misses", misses.get());
+		stats.put("evictions", evictions.get());
+		stats.put("expirations", expirations.get());
+		return stats;
+	}
+
+	static IBook copyOf(IBook book) {
+		Book copy = new Book();
+		copy.setId(book.getId());
+		copy.setIsbn(book.getIsbn());
+		copy.setTitle(book.getTitle());
+		copy.setAuthor(book.getAuthor());
+		copy.setPrice(book.getPrice());
+		return copy;
+	}
+
+	private static class Entry {
+
+		private final IBook book;
+		private final long version;
+		private final long createdAt = System.nanoTime();
+
+		private Entry(IBook book, long version) {
+			this.book = book;
+			this.version = version;
+		}
+	}
+
+}
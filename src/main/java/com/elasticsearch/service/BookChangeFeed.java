@@ -0,0 +1,245 @@
+package com.elasticsearch.service;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import javax.annotation.*;
+
+import org.slf4j.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.elasticsearch.model.*;
+
+/**
+ * Publishes the changes written by this instance to subscribers such as open book tables. Publishing never blocks
+ * the write path: every subscriber has a bounded buffer which sender threads drain into its sink. Events of the same
+ * record coalesce in the buffer so a slow subscriber only gets the latest change of a record, and a subscriber whose
+ * buffer still overflows gets a RELOAD instead of the changes it missed. The last events are kept so a subscriber
+ * can resume from the ID of the last event it has seen, when that is no longer possible it gets a RELOAD as well.
+ * Event IDs continue from the start time, so IDs of an earlier run are never taken for ones of this run.
+ */
+
+@Component
+public class BookChangeFeed {
+
+	private static final Logger logger = LoggerFactory.getLogger(BookChangeFeed.class);
+	private static final String RELOAD_KEY = "";
+
+	@Value("${elasticsearch.feed.history-size:1000}")
+	private int historySize;
+	@Value("${elasticsearch.feed.buffer-size:256}")
+	private int bufferSize;
+	@Value("${elasticsearch.feed.sender-threads:2}")
+	private int senderThreads;
+	@Value("${elasticsearch.feed.heartbeat-seconds:15}")
+	private long heartbeatSeconds;
+	@Value("${elasticsearch.feed.timeout-millis:1800000}")
+	private long timeoutMillis;
+
+	private final Deque<BookEvent> history = new ArrayDeque<>();
+	private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger senderCount = new AtomicInteger();
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong overflows = new AtomicLong();
+	private long lastEventId = System.currentTimeMillis() * 1000;
+	private ExecutorService senders;
+	private ScheduledExecutorService heartbeats;
+
+	@PostConstruct
+	private void init() {
+		senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+			Thread thread = new Thread(runnable, "book-feed-" + senderCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "book-feed-heartbeat");
+			thread.setDaemon(true);
+			return thread;
+		});
+		heartbeats.scheduleAtFixedRate(() -> subscriptions.forEach(Subscription::heartbeat), heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+	}
+
+	@PreDestroy
+	private void destroy() {
+		heartbeats.shutdownNow();
+		senders.shutdownNow();
+	}
+
+	// How long a subscriber stays connected before it has to resume with a new subscription
+	public long getTimeoutMillis() {
+		return timeoutMillis;
+	}
+
+	public void added(IBook book) {
+		publish(BookEvent.Type.ADDED, book.getId(), BookCache.copyOf(book));
+	}
+
+	// The record is null when only part of it is known
+	public void updated(String id, IBook book) {
+		publish(BookEvent.Type.UPDATED, id, book == null ? null : BookCache.copyOf(book));
+	}
+
+	public void deleted(String id) {
+		publish(BookEvent.Type.DELETED, id, null);
+	}
+
+	public void reload() {
+		publish(BookEvent.Type.RELOAD, null, null);
+	}
+
+	// Subscribes the sink to all events after lastEventId, or to the events from now on when it is null
+	public synchronized Subscription subscribe(Long lastEventId, Sink sink) {
+		Subscription subscription = new Subscription(sink);
+		if (lastEventId != null && lastEventId != this.lastEventId) {
+			BookEvent oldest = history.peekFirst();
+			if (oldest != null && lastEventId >= oldest.getId() - 1 && lastEventId < this.lastEventId) {
+				for (BookEvent event : history)
+					if (event.getId() > lastEventId)
+						subscription.offer(event);
+			} else {
+				subscription.offer(BookEvent.of(this.lastEventId, BookEvent.Type.RELOAD, null, null));
+			}
+		}
+		subscriptions.add(subscription);
+		subscription.schedule();
+		return subscription;
+	}
+
+	public Map<String, Long> snapshot() {
+		Map<String, Long> snapshot = new LinkedHashMap<>();
+		snapshot.put("subscribers", (long) subscriptions.size());
+		synchronized (this) {
+			snapshot.put("lastEventId", lastEventId);
+			snapshot.put("history", (long) history.size());
+		}
+		snapshot.put("coalesced", coalesced.get());
+		snapshot.put("overflows", overflows.get());
+		return snapshot;
+	}
+
+	private synchronized void publish(BookEvent.Type type, String bookId, IBook book) {
+		BookEvent event = BookEvent.of(++lastEventId, type, bookId, book);
+		history.addLast(event);
+		while (history.size() > historySize)
+			history.removeFirst();
+
+		for (Subscription subscription : subscriptions) {
+			subscription.offer(event);
+			subscription.schedule();
+		}
+	}
+
+	/** Where the events of one subscriber go, the sink is only ever called by one thread at a time **/
+
+	public interface Sink {
+
+		void deliver(BookEvent event) throws IOException;
+
+		// Keeps idle connections open and finds the ones which are gone
+		void heartbeat() throws IOException;
+
+		void fail(Exception e);
+	}
+
+	/** Buffer of the events a subscriber has not been sent yet, keyed by record so later events replace earlier ones **/
+
+	public final class Subscription {
+
+		private final Sink sink;
+		private final LinkedHashMap<String, BookEvent> buffer = new LinkedHashMap<>();
+		private boolean scheduled;
+		private boolean heartbeatDue;
+		private volatile boolean cancelled;
+
+		private Subscription(Sink sink) {
+			this.sink = sink;
+		}
+
+		public void cancel() {
+			cancelled = true;
+			subscriptions.remove(this);
+			synchronized (this) {
+				buffer.clear();
+			}
+		}
+
+		// An add followed by an update stays an add, so the subscriber still learns about the new record
+		private synchronized void offer(BookEvent event) {
+			if (cancelled)
+				return;
+
+			if (event.getType() == BookEvent.Type.RELOAD)
+				buffer.clear();
+			String key = event.getType() == BookEvent.Type.RELOAD ? RELOAD_KEY : event.getBookId();
+			BookEvent previous = buffer.remove(key);
+			if (previous != null) {
+				coalesced.incrementAndGet();
+				if (previous.getType() == BookEvent.Type.ADDED && event.getType() == BookEvent.Type.UPDATED && event.getBook() != null)
+					event = BookEvent.of(event.getId(), BookEvent.Type.ADDED, event.getBookId(), event.getBook());
+			}
+
+			if (buffer.size() >= bufferSize) {
+				overflows.incrementAndGet();
+				buffer.clear();
+				key = RELOAD_KEY;
+				event = BookEvent.of(event.getId(), BookEvent.Type.RELOAD, null, null);
+			}
+			buffer.put(key, event);
+		}
+
+		private void heartbeat() {
+			synchronized (this) {
+				heartbeatDue = true;
+			}
+			schedule();
+		}
+
+		// Hands the subscription to a sender unless one already has it or there is nothing to send
+		private void schedule() {
+			synchronized (this) {
+				if (scheduled || cancelled || buffer.isEmpty() && !heartbeatDue)
+					return;
+				scheduled = true;
+			}
+			try {
+				senders.execute(this::drain);
+			} catch (RejectedExecutionException e) {
+				logger.debug("Change feed is shutting down");
+			}
+		}
+
+		private void drain() {
+			while (true) {
+				List<BookEvent> events;
+				boolean heartbeat;
+				synchronized (this) {
+					if (cancelled || buffer.isEmpty() && !heartbeatDue) {
+						scheduled = false;
+						return;
+					}
+					events = new ArrayList<>(buffer.values());
+					buffer.clear();
+					heartbeat = heartbeatDue && events.isEmpty();
+					heartbeatDue = false;
+				}
+
+				try {
+					for (BookEvent event : events)
+						sink.deliver(event);
+					if (heartbeat)
+						sink.heartbeat();
+				} catch (IOException | RuntimeException e) {
+					logger.debug("Change feed subscriber is gone: {}", e.getMessage());
+					cancel();
+					sink.fail(e);
+					return;
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,60 @@
+package com.elasticsearch.service;
+
+import java.io.*;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesReference;
+
+import com.elasticsearch.model.*;
+import com.fasterxml.jackson.databind.*;
+
+/**
+ * Reads and writes Book Records directly between JSON source bytes and Book Objects. Readers and writers
+ * are built once, so no intermediate Map is created and ES does not have to re-serialize the source.
+ */
+
+public class BookCodec {
+
+	private final ObjectReader reader;
+	private final ObjectWriter writer;
+
+	public BookCodec(ObjectMapper objectMapper) {
+		this.reader = objectMapper.readerFor(Book.class);
+		this.writer = objectMapper.writerFor(Book.class);
+	}
+
+	// Parses a Book Object straight from the source bytes, returns null when there is no source
+	public IBook read(BytesReference source) {
+		if (source == null)
+			return null;
+
+		BytesRef bytesRef = source.toBytesRef();
+		try {
+			return reader.readValue(bytesRef.bytes, bytesRef.offset, bytesRef.length);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// Maps an already parsed source tree to a Book Object, returns null when there is no source
+	public IBook read(JsonNode source) {
+		if (source == null || source.isNull())
+			return null;
+
+		try {
+			return reader.readValue(source);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// Serializes a Book Object into JSON bytes ready to be sent as an index or update body
+	public byte[] write(IBook book) {
+		try {
+			return writer.writeValueAsBytes(book);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+}
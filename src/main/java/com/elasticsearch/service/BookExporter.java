@@ -0,0 +1,256 @@
+package com.elasticsearch.service;
+
+import java.io.*;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.*;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.slice.SliceBuilder;
+import org.slf4j.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.elasticsearch.metrics.BookServiceMetrics;
+import com.elasticsearch.model.ExportResult;
+import com.elasticsearch.resilience.ClientGuard;
+
+/**
+ * Exports every book record as gzip compressed NDJSON. The index is split with sliced scrolls which are read in
+ * parallel, one worker thread per slice, so the export scales with cores and shards instead of being bound to a
+ * single scroll cursor. Sources are copied as stored without mapping them to Book Objects. The slices either
+ * share one output stream or each write their own file, which also spreads the compression over the workers.
+ * Slices beyond the concurrency limit of the client guard wait for a free permit page by page.
+ */
+
+@Component
+public class BookExporter {
+
+	private static final Logger logger = LoggerFactory.getLogger(BookExporter.class);
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+	private RestHighLevelClient restHighLevelClient;
+	private BookIndexManager indexManager;
+	private BookServiceMetrics metrics;
+	private ClientGuard clientGuard;
+	private ScheduledExecutorService progressReporter;
+	private final AtomicInteger workerCount = new AtomicInteger();
+	private volatile ExportProgress lastProgress;
+
+	@Value("${elasticsearch.export.slices:0}")
+	private int slices;
+	@Value("${elasticsearch.export.directory:${java.io.tmpdir}/book-exports}")
+	private String directory;
+	@Value("${elasticsearch.export.progress-interval-seconds:5}")
+	private long progressIntervalSeconds;
+	@Value("${elasticsearch.scroll.page-size:500}")
+	private int scrollPageSize;
+	@Value("${elasticsearch.scroll.keep-alive-seconds:60}")
+	private long scrollKeepAliveSeconds;
+
+	public BookExporter(RestHighLevelClient restHighLevelClient, BookIndexManager indexManager, BookServiceMetrics metrics, ClientGuard clientGuard) {
+		this.restHighLevelClient = restHighLevelClient;
+		this.indexManager = indexManager;
+		this.metrics = metrics;
+		this.clientGuard = clientGuard;
+	}
+
+	@PostConstruct
+	private void init() {
+		progressReporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "book-export-progress");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@PreDestroy
+	private void destroy() {
+		progressReporter.shutdownNow();
+	}
+
+	// The configured number of slices, one per core when none is configured
+	public int getSlices() {
+		return slices > 0 ? slices : Runtime.getRuntime().availableProcessors();
+	}
+
+	// Returns the per slice progress and the throughput of the running or last export
+	public Map<String, Object> getProgress() {
+		ExportProgress progress = lastProgress;
+		return progress == null ? Collections.emptyMap() : progress.snapshot();
+	}
+
+	public ExportResult export(OutputStream output) {
+		return export(output, getSlices());
+	}
+
+	// Writes all records into a single compressed stream, the output is finished but left open
+	public ExportResult export(OutputStream output, int sliceCount) {
+
+		ExportProgress progress = new ExportProgress(Math.max(1, sliceCount));
+		try {
+			GZIPOutputStream gzip = new GZIPOutputStream(output, BUFFER_SIZE);
+			List<Callable<Void>> tasks = new ArrayList<>();
+			for (int slice = 0; slice < progress.getSlices(); slice++) {
+				int sliceId = slice;
+				tasks.add(() -> {
+					exportSlice(sliceId, gzip, progress);
+					return null;
+				});
+			}
+
+			run(progress, tasks);
+			gzip.finish();
+			return toResult(progress, Collections.emptyList());
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+			return toError(progress, e);
+		}
+	}
+
+	public ExportResult exportFiles() {
+		return exportFiles(getSlices());
+	}
+
+	// Writes every slice into its own compressed file in the export directory, the files of a failed export are removed
+	public ExportResult exportFiles(int sliceCount) {
+
+		ExportProgress progress = new ExportProgress(Math.max(1, sliceCount));
+		List<Path> files = new ArrayList<>();
+		try {
+			Path exportDirectory = Files.createDirectories(Paths.get(directory));
+			String prefix = "books-" + LocalDateTime.now().format(FILE_TIMESTAMP);
+
+			List<Callable<Void>> tasks = new ArrayList<>();
+			for (int slice = 0; slice < progress.getSlices(); slice++) {
+				int sliceId = slice;
+				Path file = exportDirectory.resolve(String.format("%s-%d-of-%d.ndjson.gz", prefix, slice + 1, progress.getSlices()));
+				files.add(file);
+				tasks.add(() -> {
+					try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(file), BUFFER_SIZE)) {
+						exportSlice(sliceId, output, progress);
+					}
+					return null;
+				});
+			}
+
+			run(progress, tasks);
+			return toResult(progress, files.stream().map(Path::toString).collect(Collectors.toList()));
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+			for (Path file : files)
+				try {
+					Files.deleteIfExists(file);
+				} catch (IOException ex) {
+					logger.error(ex.getMessage());
+				}
+			return toError(progress, e);
+		}
+	}
+
+	// Runs every slice on its own worker thread and logs the progress until all are done. The first failed slice cancels the others
+	private void run(ExportProgress progress, List<Callable<Void>> tasks) throws IOException {
+
+		lastProgress = progress;
+		ExecutorService workers = Executors.newFixedThreadPool(tasks.size(), runnable -> {
+			Thread thread = new Thread(runnable, "book-export-" + workerCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		ScheduledFuture<?> reporter = progressReporter.scheduleAtFixedRate(() -> logger.info("Export progress: {}", progress.snapshot()),
+				progressIntervalSeconds, progressIntervalSeconds, TimeUnit.SECONDS);
+
+		try {
+			CompletionService<Void> completion = new ExecutorCompletionService<>(workers);
+			tasks.forEach(completion::submit);
+			for (int i = 0; i < tasks.size(); i++)
+				completion.take().get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			throw cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(e.getMessage());
+		} finally {
+			workers.shutdownNow();
+			reporter.cancel(false);
+			progress.finish();
+			awaitTermination(workers);
+		}
+	}
+
+	// Reads one slice page by page. Every page is written in one piece, so slices sharing an output never interleave records
+	private void exportSlice(int slice, OutputStream output, ExportProgress progress) throws IOException {
+
+		SearchSourceBuilder source = new SearchSourceBuilder().size(scrollPageSize).sort("_doc");
+		if (progress.getSlices() > 1)
+			source.slice(new SliceBuilder(slice, progress.getSlices()));
+		SearchRequest searchRequest = new SearchRequest(indexManager.getReadAlias()).source(source).scroll(TimeValue.timeValueSeconds(scrollKeepAliveSeconds));
+
+		ScrollingHitIterator iterator = new ScrollingHitIterator(restHighLevelClient, metrics, clientGuard, searchRequest, TimeValue.timeValueSeconds(scrollKeepAliveSeconds));
+		ByteArrayOutputStream page = new ByteArrayOutputStream(BUFFER_SIZE);
+		int count = 0;
+		try {
+			while (iterator.hasNext()) {
+				iterator.next().getSourceRef().writeTo(page);
+				page.write('\n');
+				if (++count < scrollPageSize && iterator.hasNext())
+					continue;
+
+				if (Thread.currentThread().isInterrupted())
+					throw new InterruptedIOException("Export of slice " + slice + " was cancelled");
+				synchronized (output) {
+					page.writeTo(output);
+				}
+				progress.total(slice, iterator.getTotalHits());
+				progress.exported(slice, count);
+				page.reset();
+				count = 0;
+			}
+			progress.total(slice, 0);
+			progress.done(slice);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} catch (ElasticsearchException e) {
+			throw new IOException(e.getMessage(), e);
+		} finally {
+			iterator.close();
+		}
+	}
+
+	// Cancelled workers stop after their current page, waiting for them keeps a failed export from writing into a closed output
+	private void awaitTermination(ExecutorService workers) {
+		try {
+			if (!workers.awaitTermination(scrollKeepAliveSeconds, TimeUnit.SECONDS))
+				logger.error("Export workers did not stop within {} seconds", scrollKeepAliveSeconds);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private ExportResult toResult(ExportProgress progress, List<String> files) {
+		long exported = progress.getExported();
+		long tookMillis = progress.getTookMillis();
+		logger.info("Exported {} book records from {} slices in {} ms", exported, progress.getSlices(), tookMillis);
+		return ExportResult.of(Boolean.FALSE, String.format("%d book records have been exported from %d slices in %d ms.", exported, progress.getSlices(), tookMillis),
+				progress.getSlices(), exported, tookMillis, files);
+	}
+
+	private ExportResult toError(ExportProgress progress, IOException e) {
+		return ExportResult.of(Boolean.TRUE, "Error occurred while exporting the book records: " + e.getMessage(), progress.getSlices(), progress.getExported(),
+				progress.getTookMillis(), Collections.emptyList());
+	}
+
+}
@@ -0,0 +1,313 @@
+package com.elasticsearch.service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.elasticsearch.client.*;
+import org.elasticsearch.rest.RestStatus;
+import org.slf4j.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import com.elasticsearch.model.ReindexResult;
+import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.node.*;
+
+/**
+ * Manages the versioned book indices, e.g. bookdata_v2, which are created from the bundled mappings and
+ * settings and are only ever reached through a read and a write alias. Reindexing copies the records into
+ * a new version and then switches both aliases in one atomic request, so callers never see a missing or
+ * half filled index. While a reindex runs deletes are refused, as a record deleted from the old index after the
+ * copy started would otherwise come back in the new one, and the IDs of the records written in the meantime are
+ * tracked so the catch-up pass only copies those. Writes sent before the switch may still land in the old index,
+ * so the catch-up pass waits for them to complete first. All of this only covers writes made through this instance.
+ */
+
+@Component
+public class BookIndexManager {
+
+	private static final Logger logger = LoggerFactory.getLogger(BookIndexManager.class);
+
+	private ObjectMapper objectMapper;
+	private RestHighLevelClient restHighLevelClient;
+
+	@Value("${elasticsearch.index.name:bookdata}")
+	private String name;
+	@Value("${elasticsearch.index.version:2}")
+	private int version;
+	@Value("${elasticsearch.index.definition:classpath:elasticsearch/bookdata-index.json}")
+	private Resource definition;
+	@Value("${elasticsearch.reindex.max-tracked-ids:10000}")
+	private int maxTrackedIds;
+
+	private volatile boolean ready;
+	private volatile boolean reindexing;
+	private int runningDeletes;
+	private Set<String> changedIds;
+	private long writeGeneration;
+	private int runningWrites;
+	private int drainingWrites;
+
+	public BookIndexManager(ObjectMapper objectMapper, RestHighLevelClient restHighLevelClient) {
+		this.objectMapper = objectMapper;
+		this.restHighLevelClient = restHighLevelClient;
+	}
+
+	public String getReadAlias() {
+		return name + "_read";
+	}
+
+	public String getWriteAlias() {
+		return name + "_write";
+	}
+
+	// Creates the configured index version behind both aliases unless the aliases already exist. Records of an
+	// index created implicitly under the plain base name by earlier versions are copied over once. Only the first
+	// successful call talks to ES, so writers can call this before every write
+	public void ensureIndex() throws IOException {
+		if (!ready)
+			synchronized (this) {
+				if (!ready) {
+					prepareIndex();
+					ready = true;
+				}
+			}
+	}
+
+	private void prepareIndex() throws IOException {
+
+		if (exists("/_alias/" + getWriteAlias()))
+			return;
+
+		String index = versionedName(version);
+		if (exists("/" + index))
+			switchAliases(null, index);
+		else
+			createIndex(index, true);
+		logger.info("Created book index {} behind aliases {} and {}", index, getReadAlias(), getWriteAlias());
+
+		if (exists("/" + name) && !exists("/_alias/" + name)) {
+			long copied = copy(name, index, false, null);
+			logger.info("Copied {} book records from legacy index {} into {}", copied, name, index);
+		}
+	}
+
+	// Returns the concrete index the write alias currently points to
+	public String currentIndex() throws IOException {
+		Response response = restHighLevelClient.getLowLevelClient().performRequest("GET", "/_alias/" + getWriteAlias());
+		Iterator<String> indices = objectMapper.readTree(response.getEntity().getContent()).fieldNames();
+		if (!indices.hasNext())
+			throw new IOException("No index behind alias " + getWriteAlias());
+		return indices.next();
+	}
+
+	// Drops the current index and creates it again empty with the same name, mappings and aliases
+	public void recreateIndex() throws IOException {
+
+		String index;
+		try {
+			index = currentIndex();
+			restHighLevelClient.getLowLevelClient().performRequest("DELETE", "/" + index);
+		} catch (ResponseException e) {
+			if (e.getResponse().getStatusLine().getStatusCode() != RestStatus.NOT_FOUND.getStatus())
+				throw e;
+			index = versionedName(version);
+		}
+
+		createIndex(index, true);
+	}
+
+	// Registers a delete, false while a reindex runs. Every registered delete has to be ended once it completed
+	public synchronized boolean beginDelete() {
+		if (reindexing)
+			return false;
+		runningDeletes++;
+		return true;
+	}
+
+	public synchronized void endDelete() {
+		runningDeletes--;
+		notifyAll();
+	}
+
+	// Called before a record is written, so a running reindex copies it again once the aliases are switched
+	public void changing(String id) {
+		if (!reindexing)
+			return;
+		synchronized (this) {
+			if (changedIds != null && changedIds.add(id) && changedIds.size() > maxTrackedIds)
+				changedIds = null;
+		}
+	}
+
+	// Registers a write about to be sent through the write alias and returns the ticket to end it with once it completed
+	public synchronized long beginWrite() {
+		runningWrites++;
+		return writeGeneration;
+	}
+
+	// Writes begun before the last alias switch are the ones a running reindex waits for
+	public synchronized void endWrite(long ticket) {
+		if (ticket == writeGeneration) {
+			runningWrites--;
+		} else {
+			drainingWrites--;
+			notifyAll();
+		}
+	}
+
+	// Copies every record into a freshly created index of the given version and switches both aliases to it.
+	// Versions are carried over as external versions, so the catch-up pass after the switch does not overwrite
+	// newer writes to the new index. It only copies the records written while the first pass was running, or all
+	// records again when more were written than can be tracked, once the writes sent before the switch completed and
+	// the old index was refreshed so the copy sees them. The old index is kept for rolling back
+	public ReindexResult reindex(int targetVersion) {
+
+		long start = System.nanoTime();
+		String source = null;
+		String target = versionedName(targetVersion);
+		synchronized (this) {
+			if (reindexing)
+				return ReindexResult.of(Boolean.TRUE, "Another reindex is already running.", null, target, 0, 0);
+			reindexing = true;
+			changedIds = new HashSet<>();
+		}
+		try {
+			awaitDeletes();
+			source = currentIndex();
+			if (source.equals(target))
+				return ReindexResult.of(Boolean.TRUE, "The book records are already stored in " + target + ".", source, target, 0, 0);
+
+			createIndex(target, false);
+			long copied = copy(source, target, true, null);
+			switchAliases(source, target);
+			awaitWritesBeforeSwitch();
+			refresh(source);
+			Set<String> changed;
+			synchronized (this) {
+				changed = changedIds;
+				changedIds = new HashSet<>();
+			}
+			if (changed == null || !changed.isEmpty())
+				copied += copy(source, target, true, changed);
+
+			long tookMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			return ReindexResult.of(Boolean.FALSE, String.format("%d book records have been reindexed from %s into %s in %d ms.", copied, source, target, tookMillis),
+					source, target, copied, tookMillis);
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+			return ReindexResult.of(Boolean.TRUE, "Error occurred while reindexing the book records into " + target + ".", source, target, 0,
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		} finally {
+			synchronized (this) {
+				reindexing = false;
+				changedIds = null;
+			}
+		}
+	}
+
+	// Lets the deletes which started before the reindex finish, so none of them lands in the old index after the copy started
+	private synchronized void awaitDeletes() throws IOException {
+		try {
+			while (runningDeletes > 0)
+				wait();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for running deletes");
+		}
+	}
+
+	// Waits for the writes which were already running when the aliases were switched, as they may land in the old index
+	private synchronized void awaitWritesBeforeSwitch() throws IOException {
+		drainingWrites += runningWrites;
+		runningWrites = 0;
+		writeGeneration++;
+		try {
+			while (drainingWrites > 0)
+				wait();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for running writes");
+		}
+	}
+
+	private void refresh(String index) throws IOException {
+		restHighLevelClient.getLowLevelClient().performRequest("POST", "/" + index + "/_refresh");
+	}
+
+	private String versionedName(int indexVersion) {
+		return name + "_v" + indexVersion;
+	}
+
+	private boolean exists(String path) throws IOException {
+		return restHighLevelClient.getLowLevelClient().performRequest("HEAD", path).getStatusLine().getStatusCode() == RestStatus.OK.getStatus();
+	}
+
+	// Creates an index from the bundled definition, optionally with both aliases so it is live as soon as it exists
+	private void createIndex(String index, boolean withAliases) throws IOException {
+
+		ObjectNode body;
+		try (InputStream inputStream = definition.getInputStream()) {
+			body = (ObjectNode) objectMapper.readTree(StreamUtils.copyToString(inputStream, StandardCharsets.UTF_8));
+		}
+		if (withAliases) {
+			ObjectNode aliases = body.putObject("aliases");
+			aliases.putObject(getReadAlias());
+			aliases.putObject(getWriteAlias());
+		}
+
+		restHighLevelClient.getLowLevelClient().performRequest("PUT", "/" + index, Collections.emptyMap(),
+				new NStringEntity(objectMapper.writeValueAsString(body), ContentType.APPLICATION_JSON));
+	}
+
+	// Moves both aliases from one index to another in a single request, no alias is removed when there is no source
+	private void switchAliases(String source, String target) throws IOException {
+
+		ObjectNode body = objectMapper.createObjectNode();
+		ArrayNode actions = body.putArray("actions");
+		for (String alias : Arrays.asList(getReadAlias(), getWriteAlias())) {
+			if (source != null)
+				actions.addObject().putObject("remove").put("index", source).put("alias", alias);
+			actions.addObject().putObject("add").put("index", target).put("alias", alias);
+		}
+
+		restHighLevelClient.getLowLevelClient().performRequest("POST", "/_aliases", Collections.emptyMap(),
+				new NStringEntity(objectMapper.writeValueAsString(body), ContentType.APPLICATION_JSON));
+	}
+
+	// Copies the records of one index, or only the ones with the given IDs, into another through _reindex and returns
+	// the number of written records. With external versions a record is only written when it is newer than the one
+	// already in the target
+	private long copy(String source, String target, boolean keepVersions, Set<String> ids) throws IOException {
+
+		ObjectNode body = objectMapper.createObjectNode();
+		ObjectNode sourceNode = body.putObject("source").put("index", source);
+		if (ids != null) {
+			ArrayNode values = sourceNode.putObject("query").putObject("ids").putArray("values");
+			ids.forEach(values::add);
+		}
+		ObjectNode dest = body.putObject("dest").put("index", target);
+		if (keepVersions)
+			dest.put("version_type", "external");
+
+		Map<String, String> params = new HashMap<>();
+		params.put("conflicts", "proceed");
+		params.put("refresh", "true");
+
+		Response response = restHighLevelClient.getLowLevelClient().performRequest("POST", "/_reindex", params,
+				new NStringEntity(objectMapper.writeValueAsString(body), ContentType.APPLICATION_JSON));
+
+		JsonNode result = objectMapper.readTree(response.getEntity().getContent());
+		if (result.path("failures").size() > 0)
+			logger.error("Reindex failures: {}", result.get("failures"));
+
+		return result.path("created").asLong() + result.path("updated").asLong();
+	}
+
+}
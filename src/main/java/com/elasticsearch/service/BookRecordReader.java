@@ -0,0 +1,230 @@
+package com.elasticsearch.service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import com.elasticsearch.model.*;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.*;
+
+/**
+ * Reads book records one at a time from an uploaded catalog, so only the record being parsed is held in memory.
+ * A malformed record is reported with an IllegalArgumentException once it has been consumed and reading goes on
+ * with the next one. A record longer than MAX_RECORD_LENGTH characters fails the whole input, as an unterminated
+ * line or quote would otherwise pull the rest of the upload into memory.
+ */
+
+abstract class BookRecordReader implements Closeable {
+
+	static final int MAX_RECORD_LENGTH = 1 << 16;
+
+	static BookRecordReader of(ImportFormat format, InputStream input, ObjectMapper objectMapper) {
+		Reader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+		return format == ImportFormat.CSV ? new Csv(reader) : new Ndjson(reader, objectMapper.readerFor(Book.class));
+	}
+
+	protected final Reader reader;
+	// Number of lines consumed so far, the line the last record started on and the characters read of it
+	protected long lines;
+	protected long line;
+	protected int length;
+
+	private BookRecordReader(Reader reader) {
+		this.reader = reader;
+	}
+
+	// Returns the next record or null at the end of the input
+	abstract IBook read() throws IOException;
+
+	long getLine() {
+		return line;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	// Starts a new record at the next character, returns -1 at the end of the input
+	protected int first() throws IOException {
+		int c = reader.read();
+		if (c != -1) {
+			line = ++lines;
+			length = 1;
+		}
+		return c;
+	}
+
+	protected int next() throws IOException {
+		if (++length > MAX_RECORD_LENGTH)
+			throw new IOException(String.format("Record on line %d exceeds %d characters", line, MAX_RECORD_LENGTH));
+		return reader.read();
+	}
+
+	/** One JSON book record per line, blank lines are skipped **/
+
+	private static class Ndjson extends BookRecordReader {
+
+		private final ObjectReader bookReader;
+
+		private Ndjson(Reader reader, ObjectReader bookReader) {
+			super(reader);
+			this.bookReader = bookReader;
+		}
+
+		@Override
+		IBook read() throws IOException {
+			String text;
+			do {
+				text = readLine();
+				if (text == null)
+					return null;
+			} while (text.trim().isEmpty());
+
+			try {
+				return bookReader.readValue(text);
+			} catch (JsonProcessingException e) {
+				throw new IllegalArgumentException("Malformed JSON: " + e.getOriginalMessage());
+			}
+		}
+
+		private String readLine() throws IOException {
+			int c = first();
+			if (c == -1)
+				return null;
+
+			StringBuilder text = new StringBuilder();
+			for (; c != -1 && c != '\n'; c = next())
+				text.append((char) c);
+			return text.toString();
+		}
+
+	}
+
+	/**
+	 * RFC 4180 records whose header names the columns, matched case insensitively against the book fields. Quoted
+	 * fields may contain separators, doubled quotes and line breaks. Unknown columns are ignored.
+	 */
+
+	private static class Csv extends BookRecordReader {
+
+		private static final List<String> REQUIRED_COLUMNS = Arrays.asList("isbn", "title", "author");
+
+		private String[] columns;
+
+		private Csv(Reader reader) {
+			super(reader);
+		}
+
+		@Override
+		IBook read() throws IOException {
+			if (columns == null)
+				readHeader();
+
+			List<String> fields;
+			do {
+				fields = readRecord();
+				if (fields == null)
+					return null;
+			} while (fields.size() == 1 && fields.get(0).trim().isEmpty());
+
+			if (fields.size() > columns.length)
+				throw new IllegalArgumentException(String.format("Expected %d fields but found %d", columns.length, fields.size()));
+
+			Book book = new Book();
+			for (int i = 0; i < fields.size(); i++) {
+				String value = fields.get(i).trim();
+				switch (columns[i]) {
+				case "id":
+					book.setId(value.isEmpty() ? null : value);
+					break;
+				case "isbn":
+					book.setIsbn(value);
+					break;
+				case "title":
+					book.setTitle(value);
+					break;
+				case "author":
+					book.setAuthor(value);
+					break;
+				case "price":
+					book.setPrice(parsePrice(value));
+					break;
+				default:
+					break;
+				}
+			}
+			return book;
+		}
+
+		private void readHeader() throws IOException {
+			List<String> header = readRecord();
+			if (header == null)
+				header = Collections.emptyList();
+
+			columns = new String[header.size()];
+			for (int i = 0; i < columns.length; i++)
+				columns[i] = header.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT);
+
+			if (!Arrays.asList(columns).containsAll(REQUIRED_COLUMNS))
+				throw new IOException("The CSV header has to name the columns " + String.join(", ", REQUIRED_COLUMNS));
+		}
+
+		// Reads the fields of the next record, null at the end of the input
+		private List<String> readRecord() throws IOException {
+			int c = first();
+			if (c == -1)
+				return null;
+
+			List<String> fields = new ArrayList<>();
+			StringBuilder field = new StringBuilder();
+			boolean quoted = false;
+			for (;; c = next()) {
+				if (quoted) {
+					if (c == -1)
+						throw new IllegalArgumentException("Unterminated quoted field");
+					if (c == '"' && !isNext('"'))
+						quoted = false;
+					else
+						field.append((char) c);
+					if (c == '\n')
+						lines++;
+				} else if (c == '"' && field.length() == 0) {
+					quoted = true;
+				} else if (c == ',') {
+					fields.add(field.toString());
+					field.setLength(0);
+				} else if (c == '\n' || c == '\r' || c == -1) {
+					if (c == '\r')
+						isNext('\n');
+					fields.add(field.toString());
+					return fields;
+				} else {
+					field.append((char) c);
+				}
+			}
+		}
+
+		// Consumes the next character only when it is the expected one
+		private boolean isNext(int expected) throws IOException {
+			reader.mark(1);
+			if (reader.read() == expected)
+				return true;
+			reader.reset();
+			return false;
+		}
+
+		private static float parsePrice(String value) {
+			if (value.isEmpty())
+				return 0;
+			try {
+				return Float.parseFloat(value);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid price: " + value);
+			}
+		}
+
+	}
+
+}
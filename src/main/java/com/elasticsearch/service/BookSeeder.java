@@ -0,0 +1,142 @@
+package com.elasticsearch.service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.client.*;
+import org.slf4j.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import com.elasticsearch.metrics.*;
+import com.elasticsearch.model.*;
+import com.elasticsearch.resilience.ClientGuard;
+import com.fasterxml.jackson.databind.*;
+
+/**
+ * Prepares ES in the background once the application is ready, so startup never waits for the cluster:
+ * creates the index and loads the seed records from a classpath NDJSON file in a single bulk when the
+ * index is empty. Every step is retried with exponential backoff until ES is reachable. Seed records carry fixed IDs, so a retried bulk cannot store a record twice.
+ */
+
+@Component
+public class BookSeeder {
+
+	private static final Logger logger = LoggerFactory.getLogger(BookSeeder.class);
+
+	private ObjectMapper objectMapper;
+	private RestHighLevelClient restHighLevelClient;
+	private BookIndexManager indexManager;
+	private BookService bookService;
+	private BookServiceMetrics metrics;
+	private ClientGuard clientGuard;
+	private ScheduledExecutorService executor;
+
+	private int attempts;
+	private boolean seedSent;
+
+	@Value("${elasticsearch.seed.enabled:true}")
+	private boolean enabled;
+	@Value("${elasticsearch.seed.resource:classpath:elasticsearch/books-seed.ndjson}")
+	private Resource seedResource;
+	@Value("${elasticsearch.seed.initial-backoff-millis:1000}")
+	private long initialBackoffMillis;
+	@Value("${elasticsearch.seed.max-backoff-millis:60000}")
+	private long maxBackoffMillis;
+	@Value("${elasticsearch.seed.max-attempts:20}")
+	private int maxAttempts;
+
+	public BookSeeder(ObjectMapper objectMapper, RestHighLevelClient restHighLevelClient, BookIndexManager indexManager, BookService bookService,
+			BookServiceMetrics metrics, ClientGuard clientGuard) {
+		this.objectMapper = objectMapper;
+		this.restHighLevelClient = restHighLevelClient;
+		this.indexManager = indexManager;
+		this.bookService = bookService;
+		this.metrics = metrics;
+		this.clientGuard = clientGuard;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void onApplicationReady() {
+		executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "book-seeder");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.execute(this::attempt);
+	}
+
+	@PreDestroy
+	private void destroy() {
+		if (executor != null)
+			executor.shutdownNow();
+	}
+
+	// Runs every step once, a failed step schedules the next attempt which starts over as every step is idempotent
+	private void attempt() {
+		attempts++;
+		try {
+			if (!restHighLevelClient.ping())
+				throw new IOException("Elastic Search is not reachable");
+
+			indexManager.ensureIndex();
+			if (enabled)
+				seed();
+
+			logger.info("Elastic Search is ready after {} attempt(s)", attempts);
+		} catch (IOException | UncheckedIOException | ElasticsearchException e) {
+			if (maxAttempts > 0 && attempts >= maxAttempts) {
+				logger.error("Giving up preparing Elastic Search after {} attempts: {}", attempts, e.getMessage());
+				return;
+			}
+
+			long backoffMillis = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempts - 1, 20));
+			logger.warn("Preparing Elastic Search failed, retrying in {} ms: {}", backoffMillis, e.getMessage());
+			executor.schedule(this::attempt, backoffMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	// Bulk loads the seed records unless the index already had records before the first bulk was sent
+	private void seed() throws IOException {
+		List<IBook> books = readSeedRecords();
+		long count = countRecords();
+		if (!seedSent && count > 0) {
+			logger.info("Skipping seed data as the index already holds {} book records", count);
+			return;
+		}
+
+		seedSent = true;
+		long failed = bookService.addBookRecords(books.stream(), WriteConsistency.WAIT_UNTIL).stream().filter(IResultData::hasError).count();
+		count = countRecords();
+		if (count < books.size())
+			throw new IOException(String.format("Only %d of %d seed records are stored, %d failed", count, books.size(), failed));
+
+		logger.info("Loaded {} seed book records into Elastic Search", books.size());
+	}
+
+	private List<IBook> readSeedRecords() throws IOException {
+		ObjectReader reader = objectMapper.readerFor(Book.class);
+		try (BufferedReader lines = new BufferedReader(new InputStreamReader(seedResource.getInputStream(), StandardCharsets.UTF_8))) {
+			List<IBook> books = new ArrayList<>();
+			for (String line : lines.lines().filter(line -> !line.trim().isEmpty()).collect(Collectors.toList()))
+				books.add(reader.readValue(line));
+			return books;
+		}
+	}
+
+	private long countRecords() throws IOException {
+		Response response = metrics.measure(Operation.SEARCH, 0,
+				clientGuard.wrap(Operation.SEARCH, () -> restHighLevelClient.getLowLevelClient().performRequest("GET", "/" + indexManager.getReadAlias() + "/_count")));
+		return objectMapper.readTree(response.getEntity().getContent()).path("count").asLong();
+	}
+
+}
@@ -1,29 +1,49 @@
 package com.elasticsearch.service;
 
-import java.io.IOException;
+import java.io.*;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.*;
 
-import javax.annotation.PostConstruct;
+import javax.annotation.*;
 
-import org.elasticsearch.ElasticsearchException;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.elasticsearch.*;
+import org.elasticsearch.action.*;
 import org.elasticsearch.action.DocWriteResponse.Result;
+import org.elasticsearch.action.bulk.*;
 import org.elasticsearch.action.delete.*;
 import org.elasticsearch.action.get.*;
 import org.elasticsearch.action.index.*;
 import org.elasticsearch.action.search.*;
 import org.elasticsearch.action.update.*;
-import org.elasticsearch.client.RestHighLevelClient;
-import org.elasticsearch.common.xcontent.XContentType;
-import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.client.*;
+import org.elasticsearch.common.CheckedSupplier;
+import org.elasticsearch.common.unit.*;
+import org.elasticsearch.common.xcontent.*;
+import org.elasticsearch.index.query.*;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.aggregations.*;
+import org.elasticsearch.search.aggregations.bucket.global.Global;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
+import org.elasticsearch.search.aggregations.bucket.range.*;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.metrics.stats.Stats;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
+import org.elasticsearch.search.sort.*;
 import org.slf4j.*;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.*;
 import org.springframework.stereotype.Service;
 
+import com.elasticsearch.metrics.*;
 import com.elasticsearch.model.*;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.elasticsearch.resilience.*;
+import com.fasterxml.jackson.databind.*;
 
 /**
  * @author Farhan Haq This class provides Elastic Search CRUD Operations for Book Records
@@ -33,82 +53,436 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 public class BookService implements IBookService {
 
 	private static final Logger logger = LoggerFactory.getLogger(BookService.class);
-	public final String INDEX = "bookdata";
-
 	public final String TYPE = "books";
+	private static final String ALL_RECORDS = "all_records";
+	private static final String AUTHORS = "authors";
+	private static final String PRICE_HISTOGRAM = "price_histogram";
+	private static final String PRICE_RANGES = "price_ranges";
+	private static final String PRICE_STATS = "price_stats";
+	private static final String TIE_BREAKER_FIELD = "id";
+	private static final String RELEVANCE = "relevance";
+	private static final Map<String, String> SORT_FIELDS = new HashMap<>();
+	private static final Set<String> PATCHABLE_FIELDS = new HashSet<>(Arrays.asList("isbn", "title", "author", "price"));
+
+	static {
+		SORT_FIELDS.put("id", "id");
+		SORT_FIELDS.put("isbn", "isbn");
+		SORT_FIELDS.put("title", "title.keyword");
+		SORT_FIELDS.put("author", "author.keyword");
+		SORT_FIELDS.put("price", "price");
+	}
+
 	private ObjectMapper objectMapper;
+	private BookCodec bookCodec;
+	private BookServiceMetrics metrics;
+	private ClientGuard clientGuard;
+	private HedgedReader hedgedReader;
+	private BookChangeFeed changeFeed;
 	private Map<Status, String> statusMap;
+	private ExecutorService purgeExecutor;
 
 	private RestHighLevelClient restHighLevelClient;
+	private BookIndexManager indexManager;
+	private String readIndex;
+	private String writeIndex;
+	private BookCache bookCache;
+	private QueryCache queryCache;
+	private Set<String> pendingIsbns = ConcurrentHashMap.newKeySet();
+
+	@Value("${elasticsearch.write.consistency:NONE}")
+	private WriteConsistency writeConsistency;
+	@Value("${elasticsearch.id.strategy:FLAKE}")
+	private IdStrategy idStrategy;
+	@Value("${elasticsearch.update.retry-on-conflict:3}")
+	private int retryOnConflict;
+	@Value("${elasticsearch.bulk.actions:1000}")
+	private int bulkActions;
+	@Value("${elasticsearch.bulk.size-mb:5}")
+	private long bulkSizeMb;
+	@Value("${elasticsearch.bulk.flush-interval-seconds:5}")
+	private long bulkFlushIntervalSeconds;
+	@Value("${elasticsearch.bulk.concurrent-requests:1}")
+	private int bulkConcurrentRequests;
+	@Value("${elasticsearch.bulk.backoff-delay-millis:100}")
+	private long bulkBackoffDelayMillis;
+	@Value("${elasticsearch.bulk.backoff-retries:3}")
+	private int bulkBackoffRetries;
+	@Value("${elasticsearch.bulk.await-seconds:60}")
+	private long bulkAwaitSeconds;
+	@Value("${elasticsearch.import.max-errors:100}")
+	private int importMaxErrors;
+	@Value("${elasticsearch.import.progress-interval:100000}")
+	private long importProgressInterval;
+	@Value("${elasticsearch.scroll.page-size:500}")
+	private int scrollPageSize;
+	@Value("${elasticsearch.scroll.keep-alive-seconds:60}")
+	private long scrollKeepAliveSeconds;
+	@Value("${elasticsearch.paging.max-result-window:10000}")
+	private int maxResultWindow;
+	@Value("${elasticsearch.paging.max-size:100}")
+	private int pageMaxSize;
+	@Value("${elasticsearch.paging.max-depth:100000}")
+	private int pageMaxDepth;
+	@Value("${elasticsearch.search.max-size:100}")
+	private int searchMaxSize;
+	@Value("${elasticsearch.facets.author-size:10}")
+	private int facetAuthorSize;
+	@Value("${elasticsearch.facets.price-interval:10}")
+	private double facetPriceInterval;
+	@Value("${elasticsearch.facets.price-ranges:20,50,100}")
+	private String[] facetPriceRanges;
+	private double[] priceBoundaries;
+	@Value("${elasticsearch.purge.mode:DELETE_BY_QUERY}")
+	private PurgeMode purgeMode;
+	@Value("${elasticsearch.purge.slices:auto}")
+	private String purgeSlices;
+	@Value("${elasticsearch.purge.conflicts:proceed}")
+	private String purgeConflicts;
+	@Value("${elasticsearch.cache.max-entries:10000}")
+	private int cacheMaxEntries;
+	@Value("${elasticsearch.cache.ttl-seconds:60}")
+	private long cacheTtlSeconds;
+	@Value("${elasticsearch.query-cache.max-bytes:16777216}")
+	private long queryCacheMaxBytes;
+	@Value("${elasticsearch.query-cache.max-staleness-millis:30000}")
+	private long queryCacheMaxStalenessMillis;
+	@Value("${elasticsearch.query-cache.settle-millis:1000}")
+	private long queryCacheSettleMillis;
 
 	@Autowired
-	public BookService(ObjectMapper objectMapper, RestHighLevelClient restHighLevelClient) {
+	public BookService(ObjectMapper objectMapper, RestHighLevelClient restHighLevelClient, BookIndexManager indexManager, BookServiceMetrics metrics,
+			ClientGuard clientGuard, HedgedReader hedgedReader, BookChangeFeed changeFeed) {
 		this.objectMapper = objectMapper;
+		this.bookCodec = new BookCodec(objectMapper);
 		this.restHighLevelClient = restHighLevelClient;
+		this.indexManager = indexManager;
+		this.readIndex = indexManager.getReadAlias();
+		this.writeIndex = indexManager.getWriteAlias();
+		this.metrics = metrics;
+		this.clientGuard = clientGuard;
+		this.hedgedReader = hedgedReader;
+		this.changeFeed = changeFeed;
 		statusMap = new EnumMap<>(Status.class);
 		populateStatusMap();
 	}
 
-	// Creates and stores Book Record data into Elastic Search
 	@Override
 	public IResultData addBookRecord(IBook book) {
+		return addBookRecord(book, writeConsistency);
+	}
+
+	// Creates and stores Book Record data into Elastic Search
+	@Override
+	public IResultData addBookRecord(IBook book, WriteConsistency consistency) {
 
 		Optional<String> emptyField = getEmptyField(book);
 		if (emptyField.isPresent())
 			return ResultData.of(Boolean.TRUE, getStatusMessage(Status.EMPTY, emptyField.get()));
 
-		if (bookRecordExists(book))
+		// Reserving the ISBN rejects concurrent adds of the same book within this instance
+		if (!pendingIsbns.add(book.getIsbn()))
 			return ResultData.of(Boolean.TRUE, getStatusMessage(Status.EXISTS));
 
-		if (book.getId() == null)
-			book.setId(Book.generateId());
+		try {
+			// Adding a record which may be a duplicate is worse than refusing it, so only a missing index counts as absent
+			try {
+				if (bookRecordExists(book))
+					return ResultData.of(Boolean.TRUE, getStatusMessage(Status.EXISTS));
+			} catch (IOException | ElasticsearchException e) {
+				logger.error(e.getMessage());
+				return ResultData.of(Boolean.TRUE, getStatusMessage(Status.ADD_ERROR));
+			}
+
+			IndexResponse response = null;
+			try {
+				IndexRequest indexRequest = buildIndexRequest(book).setRefreshPolicy(consistency.getRefreshPolicy());
+				response = metrics.measure(Operation.INDEX, indexRequest.source().length(), clientGuard.wrap(Operation.INDEX, tracked(() -> restHighLevelClient.index(indexRequest))));
+			} catch (ElasticsearchException e) {
+				if (e.status() == RestStatus.CONFLICT)
+					return ResultData.of(Boolean.TRUE, getStatusMessage(Status.EXISTS));
+				logger.error(e.getDetailedMessage());
+			} catch (java.io.IOException | UncheckedIOException ex) {
+				logger.error(ex.getLocalizedMessage());
+			}
+
+			return toAddResult(response, book);
+		} finally {
+			pendingIsbns.remove(book.getIsbn());
+		}
+	}
 
-		Map<?, ?> dataMap = objectMapper.convertValue(book, Map.class);
-		IndexRequest indexRequest = new IndexRequest(INDEX, TYPE, book.getId()).source(dataMap);
-		IndexResponse response = null;
+	@Override
+	public CompletableFuture<IResultData> addBookRecordAsync(IBook book) {
+		return addBookRecordAsync(book, writeConsistency);
+	}
+
+	// Creates and stores Book Record data into Elastic Search without blocking the calling thread
+	@Override
+	public CompletableFuture<IResultData> addBookRecordAsync(IBook book, WriteConsistency consistency) {
+
+		Optional<String> emptyField = getEmptyField(book);
+		if (emptyField.isPresent())
+			return CompletableFuture.completedFuture(ResultData.of(Boolean.TRUE, getStatusMessage(Status.EMPTY, emptyField.get())));
+
+		// Making sure the write alias exists may call ES synchronously, so it happens on the calling thread. The
+		// index request is built in a continuation on an I/O reactor thread, which must never wait for ES itself
 		try {
-			response = restHighLevelClient.index(indexRequest);
-		} catch (ElasticsearchException e) {
-			logger.error(e.getDetailedMessage());
-		} catch (java.io.IOException ex) {
-			logger.error(ex.getLocalizedMessage());
+			writeIndex();
+		} catch (UncheckedIOException e) {
+			logger.error(e.getMessage());
+			return CompletableFuture.completedFuture(ResultData.of(Boolean.TRUE, getStatusMessage(Status.ADD_ERROR)));
 		}
 
-		return (response != null) && (response.getResult() == Result.CREATED) ? ResultData.of(Boolean.FALSE, getStatusMessage(Status.ADD_SUCCESS))
-				: ResultData.of(Boolean.TRUE, getStatusMessage(Status.ADD_ERROR));
+		if (!pendingIsbns.add(book.getIsbn()))
+			return CompletableFuture.completedFuture(ResultData.of(Boolean.TRUE, getStatusMessage(Status.EXISTS)));
+
+		CompletableFuture<SearchResponse> searchFuture = new CompletableFuture<>();
+		metrics.measure(Operation.EXISTS, 0, clientGuard.wrap(Operation.EXISTS, listener -> restHighLevelClient.searchAsync(buildExistsRequest(book), listener)), completing(searchFuture));
+		CompletableFuture<Boolean> existsFuture = searchFuture.handle((searchResponse, e) -> {
+			if (e == null)
+				return hasHits(searchResponse);
+			if (isNotFound(e))
+				return Boolean.FALSE;
+			throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+		});
+
+		return existsFuture.thenCompose(exists -> {
+			if (exists)
+				return CompletableFuture.completedFuture(ResultData.of(Boolean.TRUE, getStatusMessage(Status.EXISTS)));
+
+			CompletableFuture<IndexResponse> indexFuture = new CompletableFuture<>();
+			IndexRequest indexRequest = buildIndexRequest(book).setRefreshPolicy(consistency.getRefreshPolicy());
+			metrics.measure(Operation.INDEX, indexRequest.source().length(), clientGuard.wrap(Operation.INDEX, tracked(listener -> restHighLevelClient.indexAsync(indexRequest, listener))), completing(indexFuture));
+			return indexFuture.thenApply(indexResponse -> toAddResult(indexResponse, book));
+		}).exceptionally(e -> {
+			if (isConflict(e))
+				return ResultData.of(Boolean.TRUE, getStatusMessage(Status.EXISTS));
+			logger.error(e.getMessage());
+			return toAddResult(null, book);
+		}).whenComplete((result, e) -> pendingIsbns.remove(book.getIsbn()));
 	}
 
 	@Override
-	public void deleteAll() {
-		getBookRecords().forEach(record -> deleteBookRecord(record.getId()));
+	public List<IResultData> addBookRecords(Stream<IBook> books) {
+		return addBookRecords(books, WriteConsistency.NONE);
+	}
+
+	// Streams Book Records into Elastic Search through a Bulk Processor, flushing by action count, payload size or elapsed time.
+	// Individual bulks are never refreshed, any consistency other than NONE refreshes the index once after the last bulk
+	@Override
+	public List<IResultData> addBookRecords(Stream<IBook> books, WriteConsistency consistency) {
+
+		List<IResultData> results = Collections.synchronizedList(new ArrayList<>());
+		BulkProcessor bulkProcessor = buildBulkProcessor(buildBulkListener(results));
+
+		books.forEach(book -> {
+			Optional<String> emptyField = getEmptyField(book);
+			if (emptyField.isPresent()) {
+				results.add(ResultData.of(Boolean.TRUE, getStatusMessage(Status.EMPTY, emptyField.get())));
+				return;
+			}
+
+			try {
+				bulkProcessor.add(buildIndexRequest(book));
+			} catch (UncheckedIOException e) {
+				logger.error(e.getMessage());
+				results.add(ResultData.of(Boolean.TRUE, getStatusMessage(Status.ADD_ITEM_ERROR, book.getId())));
+			}
+		});
+
+		try {
+			if (!bulkProcessor.awaitClose(bulkAwaitSeconds, TimeUnit.SECONDS))
+				logger.error("Bulk ingestion did not complete within {} seconds", bulkAwaitSeconds);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.error(e.getMessage());
+		}
+
+		if (consistency != WriteConsistency.NONE)
+			refreshIndex();
+
+		return results;
+	}
+
+	// Streams an uploaded catalog into Elastic Search. Records are parsed one at a time and handed to a Bulk Processor whose add
+	// blocks while the configured number of bulks is in flight, so however large the upload is only the bulk being filled and
+	// the bulks in flight are held in memory. Per record results are reduced to counters and the first errors
+	@Override
+	public ImportResult importBookRecords(InputStream input, ImportFormat format) {
+
+		ImportReport report = new ImportReport(importMaxErrors);
+		BulkProcessor bulkProcessor = buildBulkProcessor(buildImportListener(report));
+		String abortMessage = null;
+
+		try (BookRecordReader reader = BookRecordReader.of(format, input, objectMapper)) {
+			while (true) {
+				IBook book;
+				try {
+					book = reader.read();
+				} catch (IllegalArgumentException e) {
+					report.read();
+					report.invalid(reader.getLine(), e.getMessage());
+					continue;
+				}
+				if (book == null)
+					break;
+
+				// Counting the record comes first, an interval of 0 only turns off the progress log
+				long read = report.read();
+				if (importProgressInterval > 0 && read % importProgressInterval == 0)
+					logger.info("Import progress: {} book records read, {} imported, {} invalid, {} failed", report.getRead(), report.getImported(),
+							report.getInvalid(), report.getFailed());
+
+				Optional<String> emptyField = getEmptyField(book);
+				if (emptyField.isPresent()) {
+					report.invalid(reader.getLine(), getStatusMessage(Status.EMPTY, emptyField.get()).trim());
+					continue;
+				}
+
+				bulkProcessor.add(buildIndexRequest(book));
+			}
+		} catch (IOException | UncheckedIOException e) {
+			logger.error(e.getMessage());
+			abortMessage = e.getMessage();
+		} finally {
+			try {
+				if (!bulkProcessor.awaitClose(bulkAwaitSeconds, TimeUnit.SECONDS))
+					logger.error("Import did not complete within {} seconds", bulkAwaitSeconds);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				logger.error(e.getMessage());
+			}
+		}
+
+		refreshIndex();
+
+		if (abortMessage != null)
+			return report.toResult(Boolean.TRUE, String.format(statusMap.get(Status.IMPORT_ERROR), report.getImported(), report.getRead(), abortMessage));
+		// Single bad records are reported in the errors, the import as a whole only fails when not a single record could be stored
+		return report.toResult(report.getImported() == 0 && report.getRead() > 0, String.format(statusMap.get(Status.IMPORT_SUCCESS),
+				report.getImported(), report.getRead(), report.getInvalid(), report.getFailed(), report.getTookMillis()));
+	}
+
+	@Override
+	public PurgeResult deleteAll() {
+		return deleteAll(purgeMode);
+	}
+
+	// Removes all Book Records either through delete-by-query or by recreating the index
+	@Override
+	public PurgeResult deleteAll(PurgeMode mode) {
+
+		long start = System.nanoTime();
+		if (!indexManager.beginDelete())
+			return PurgeResult.of(Boolean.TRUE, getStatusMessage(Status.PURGE_BLOCKED), 0, 0);
+		long deleted;
+		try {
+			deleted = mode == PurgeMode.TRUNCATE ? truncateIndex() : deleteByQuery();
+		} catch (IOException | UncheckedIOException e) {
+			// A failed purge may still have deleted part of the records, so nothing cached can be trusted
+			bookCache.clear();
+			queryCache.invalidate();
+			logger.error(e.getMessage());
+			return PurgeResult.of(Boolean.TRUE, getStatusMessage(Status.PURGE_ERROR), 0, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		} finally {
+			indexManager.endDelete();
+		}
+
+		bookCache.clear();
+		queryCache.invalidate();
+		changeFeed.reload();
+		long tookMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		return PurgeResult.of(Boolean.FALSE, String.format(statusMap.get(Status.PURGE_SUCCESS), deleted, tookMillis), deleted, tookMillis);
+	}
+
+	@Override
+	public CompletableFuture<PurgeResult> deleteAllAsync() {
+		return deleteAllAsync(purgeMode);
+	}
+
+	// Removes all Book Records without blocking the calling thread. Truncating takes several synchronous index calls,
+	// so purges run one at a time on their own thread instead of being chained on the I/O reactor threads
+	@Override
+	public CompletableFuture<PurgeResult> deleteAllAsync(PurgeMode mode) {
+		try {
+			return CompletableFuture.supplyAsync(() -> deleteAll(mode), purgeExecutor).exceptionally(e -> {
+				bookCache.clear();
+				queryCache.invalidate();
+				logger.error(e.getMessage());
+				return PurgeResult.of(Boolean.TRUE, getStatusMessage(Status.PURGE_ERROR), 0, 0);
+			});
+		} catch (RejectedExecutionException e) {
+			logger.error(e.getMessage());
+			return CompletableFuture.completedFuture(PurgeResult.of(Boolean.TRUE, getStatusMessage(Status.PURGE_ERROR), 0, 0));
+		}
 	}
 
-	// Deletes Book Record data from Elastic Search
 	@Override
 	public IResultData deleteBookRecord(String id) {
-		DeleteRequest deleteRequest = new DeleteRequest(INDEX, TYPE, id);
+		return deleteBookRecord(id, writeConsistency);
+	}
+
+	// Deletes Book Record data from Elastic Search
+	@Override
+	public IResultData deleteBookRecord(String id, WriteConsistency consistency) {
+		if (!indexManager.beginDelete())
+			return ResultData.of(Boolean.TRUE, getStatusMessage(Status.DELETE_BLOCKED, id));
 		DeleteResponse deleteResponse = null;
 		try {
-			deleteResponse = restHighLevelClient.delete(deleteRequest);
-		} catch (java.io.IOException e) {
+			DeleteRequest deleteRequest = new DeleteRequest(writeIndex(), TYPE, id).setRefreshPolicy(consistency.getRefreshPolicy());
+			deleteResponse = metrics.measure(Operation.DELETE, 0, clientGuard.wrap(Operation.DELETE, () -> restHighLevelClient.delete(deleteRequest)));
+		} catch (java.io.IOException | UncheckedIOException e) {
 			logger.error(e.getLocalizedMessage());
+		} finally {
+			indexManager.endDelete();
 		}
 
-		return (deleteResponse != null) && (deleteResponse.getResult() == Result.DELETED) ? ResultData.of(Boolean.FALSE, getStatusMessage(Status.DELETE_SUCCESS, id))
-				: ResultData.of(Boolean.TRUE, getStatusMessage(Status.DELETE_ERROR, id));
+		return toDeleteResult(deleteResponse, id);
+
+	}
 
+	@Override
+	public CompletableFuture<IResultData> deleteBookRecordAsync(String id) {
+		return deleteBookRecordAsync(id, writeConsistency);
+	}
+
+	// Deletes Book Record data from Elastic Search without blocking the calling thread
+	@Override
+	public CompletableFuture<IResultData> deleteBookRecordAsync(String id, WriteConsistency consistency) {
+
+		if (!indexManager.beginDelete())
+			return CompletableFuture.completedFuture(ResultData.of(Boolean.TRUE, getStatusMessage(Status.DELETE_BLOCKED, id)));
+		CompletableFuture<DeleteResponse> deleteFuture = new CompletableFuture<>();
+		deleteFuture.whenComplete((response, e) -> indexManager.endDelete());
+		try {
+			DeleteRequest deleteRequest = new DeleteRequest(writeIndex(), TYPE, id).setRefreshPolicy(consistency.getRefreshPolicy());
+			metrics.measure(Operation.DELETE, 0, clientGuard.wrap(Operation.DELETE, listener -> restHighLevelClient.deleteAsync(deleteRequest, listener)), completing(deleteFuture));
+		} catch (RuntimeException e) {
+			deleteFuture.completeExceptionally(e);
+		}
+
+		return deleteFuture.thenApply(deleteResponse -> toDeleteResult(deleteResponse, id)).exceptionally(e -> {
+			logger.error(e.getMessage());
+			return toDeleteResult(null, id);
+		});
 	}
 
 	// Gets a specific Book Record with an ID
 	@Override
 	public IBook getBookRecord(String id) {
 
-		GetRequest getRequest = new GetRequest(INDEX, TYPE, id);
-		IBook book = null;
+		IBook book = bookCache.get(id);
+		if (book != null)
+			return book;
+
 		try {
-			GetResponse getResponse = restHighLevelClient.get(getRequest);
-			Map<String, Object> sourceAsMap = getResponse.getSourceAsMap();
-			book = objectMapper.convertValue(sourceAsMap, Book.class);
+			GetResponse getResponse = metrics.measure(Operation.GET, 0,
+					clientGuard.wrap(Operation.GET, () -> hedgedReader.read(Operation.GET, (client, preference, listener) -> client.getAsync(buildGetRequest(id, preference), listener))));
+			book = toCachedBook(getResponse);
+		} catch (ElasticsearchException e) {
+			// A missing index or alias, as before the first records are stored, holds no records either
+			if (!isNotFound(e))
+				logger.error(e.getDetailedMessage());
 		} catch (java.io.IOException e) {
 			logger.error(e.getLocalizedMessage());
 		}
@@ -116,82 +490,902 @@ public class BookService implements IBookService {
 		return book;
 	}
 
+	// Gets a specific Book Record with an ID without blocking the calling thread
+	@Override
+	public CompletableFuture<IBook> getBookRecordAsync(String id) {
+
+		IBook book = bookCache.get(id);
+		if (book != null)
+			return CompletableFuture.completedFuture(book);
+
+		CompletableFuture<GetResponse> getFuture = new CompletableFuture<>();
+		metrics.measure(Operation.GET, 0, clientGuard.wrap(Operation.GET, listener -> hedgedReader.read(Operation.GET,
+				(client, preference, attemptListener) -> client.getAsync(buildGetRequest(id, preference), attemptListener), listener)), completing(getFuture));
+
+		return getFuture.thenApply(this::toCachedBook).exceptionally(e -> {
+			logger.error(e.getMessage());
+			return null;
+		});
+	}
+
+	// Gets several Book Records in one round trip, only the named source fields are fetched when any are given.
+	// Results keep the order of the IDs and IDs which do not exist are left out
+	@Override
+	public List<IBook> getBookRecords(Collection<String> ids, String... fields) {
+
+		boolean fullSource = fields == null || fields.length == 0;
+		FetchSourceContext fetchSourceContext = fullSource ? FetchSourceContext.FETCH_SOURCE : new FetchSourceContext(true, fields, null);
+		Set<String> uniqueIds = new LinkedHashSet<>(ids);
+		Map<String, IBook> books = new HashMap<>();
+
+		MultiGetRequest multiGetRequest = new MultiGetRequest().realtime(true);
+		for (String id : uniqueIds) {
+			IBook book = fullSource ? bookCache.get(id) : null;
+			if (book != null)
+				books.put(id, book);
+			else
+				multiGetRequest.add(new MultiGetRequest.Item(readIndex, TYPE, id).fetchSourceContext(fetchSourceContext));
+		}
+
+		if (!multiGetRequest.getItems().isEmpty()) {
+			try {
+				books.putAll(multiGet(multiGetRequest, fullSource));
+			} catch (IOException | UncheckedIOException | ElasticsearchException e) {
+				logger.error(e.getMessage());
+			}
+		}
+
+		return uniqueIds.stream().map(books::get).filter(Objects::nonNull).collect(Collectors.toList());
+	}
+
 	// Gets all records as Book Objects
 	@Override
 	public List<IBook> getBookRecords() {
 
-		SearchRequest searchRequest = new SearchRequest(INDEX);
-		searchRequest.types(TYPE);
-		SearchResponse searchResponse = null;
+		String key = QueryCache.key(buildScrollRequest());
+		List<IBook> cached = queryCache.get(key);
+		if (cached != null)
+			return copyOf(cached);
 
-		try {
-			searchResponse = restHighLevelClient.search(searchRequest);
-		} catch (IOException e) {
+		QueryCache.Ticket ticket = queryCache.begin();
+		try (Stream<IBook> books = streamBookRecords()) {
+			List<IBook> result = books.collect(Collectors.toList());
+			queryCache.put(key, copyOf(result), QueryCache.weigh(result), ticket);
+			return result;
+		} catch (UncheckedIOException | ElasticsearchException e) {
+			if (!isNotFound(e))
+				logger.error(e.getMessage());
+			return new ArrayList<>();
+		}
+	}
+
+	// Gets all records as Book Objects by chaining scroll requests without blocking the calling thread
+	@Override
+	public CompletableFuture<List<IBook>> getBookRecordsAsync() {
+
+		SearchRequest searchRequest = buildScrollRequest();
+		String key = QueryCache.key(searchRequest);
+		List<IBook> cached = queryCache.get(key);
+		if (cached != null)
+			return CompletableFuture.completedFuture(copyOf(cached));
+
+		QueryCache.Ticket ticket = queryCache.begin();
+		CompletableFuture<List<SearchHit>> hitsFuture = new CompletableFuture<>();
+		metrics.measure(Operation.SEARCH, 0, clientGuard.wrap(Operation.SEARCH, listener -> restHighLevelClient.searchAsync(searchRequest, listener)),
+				collectingScroll(new ArrayList<>(), null, hitsFuture));
+
+		// The hits are decoded off the I/O reactor threads, which only chain the scroll requests
+		return hitsFuture.thenApplyAsync(hits -> hits.stream().map(this::toBook).collect(Collectors.toList())).thenApply(books -> {
+			queryCache.put(key, copyOf(books), QueryCache.weigh(books), ticket);
+			return books;
+		}).exceptionally(e -> {
 			logger.error(e.getMessage());
 			return new ArrayList<>();
+		});
+	}
+
+	// Gets one sorted and filtered page of records, pages beyond the result window are reached through search_after.
+	// Larger pages are cut down to the configured size, pages beyond the configured depth are refused as seeking
+	// them takes a search per result window
+	@Override
+	public BookPage getBookRecords(int from, int size, String sortField, boolean ascending, String searchText) {
+
+		if (from < 0 || size < 0)
+			throw new IllegalArgumentException("Page start and length cannot be negative.");
+		if (from > pageMaxDepth)
+			throw new IllegalArgumentException("Pages cannot start beyond record " + pageMaxDepth + ", narrow the search instead.");
+		size = Math.min(size, pageMaxSize);
+
+		QueryBuilder query = buildPageQuery(searchText);
+		SortOrder order = ascending ? SortOrder.ASC : SortOrder.DESC;
+		String field = SORT_FIELDS.getOrDefault(sortField, TIE_BREAKER_FIELD);
+
+		SearchSourceBuilder sourceBuilder = buildPageSource(query, field, order).size(size).aggregation(AggregationBuilders.global(ALL_RECORDS));
+		// Keyed before a deep page is turned into a search_after request, as seeking takes searches of its own
+		String key = "from=" + from + " " + QueryCache.key(new SearchRequest(readIndex).types(TYPE).source(sourceBuilder));
+		BookPage cached = queryCache.get(key);
+		if (cached != null)
+			return BookPage.of(copyOf(cached.getBooks()), cached.getTotal(), cached.getFiltered());
+
+		QueryCache.Ticket ticket = queryCache.begin();
+		try {
+			if (from + size <= maxResultWindow) {
+				sourceBuilder.from(from);
+			} else {
+				Object[] searchAfter = seekSortValues(query, field, order, from);
+				if (searchAfter == null)
+					return BookPage.empty();
+				sourceBuilder.searchAfter(searchAfter);
+			}
+
+			SearchResponse searchResponse = metrics.measure(Operation.SEARCH, 0, clientGuard.wrap(Operation.SEARCH, () -> hedgedReader.read(Operation.SEARCH, (client, preference,
+					listener) -> client.searchAsync(new SearchRequest(readIndex).types(TYPE).source(sourceBuilder).preference(preference), listener))));
+			List<IBook> books = Arrays.stream(searchResponse.getHits().getHits()).map(this::toBook).collect(Collectors.toList());
+			Global allRecords = searchResponse.getAggregations().get(ALL_RECORDS);
+
+			BookPage page = BookPage.of(books, allRecords.getDocCount(), searchResponse.getHits().getTotalHits());
+			queryCache.put(key, BookPage.of(copyOf(books), page.getTotal(), page.getFiltered()), QueryCache.weigh(books), ticket);
+			return page;
+		} catch (IOException | UncheckedIOException | ElasticsearchException e) {
+			// A missing index or alias holds no records, any other failure is logged and answered with an empty page too
+			if (!isNotFound(e))
+				logger.error(e.getMessage());
+			return BookPage.empty();
 		}
+	}
+
+	// Aggregates the records matching searchText in a size 0 search, so only buckets are transferred and the
+	// shard request cache can answer repeated requests until the next refresh changes the index
+	@Override
+	public BookFacets getFacets(String searchText) {
+
+		SearchSourceBuilder sourceBuilder = new SearchSourceBuilder().query(buildPageQuery(searchText)).size(0);
+		sourceBuilder.aggregation(AggregationBuilders.terms(AUTHORS).field("author.keyword").size(facetAuthorSize));
+		sourceBuilder.aggregation(AggregationBuilders.histogram(PRICE_HISTOGRAM).field("price").interval(facetPriceInterval).minDocCount(1));
+		if (priceBoundaries.length > 0)
+			sourceBuilder.aggregation(buildPriceRanges(priceBoundaries));
+		sourceBuilder.aggregation(AggregationBuilders.stats(PRICE_STATS).field("price"));
+
+		SearchRequest searchRequest = new SearchRequest(readIndex).types(TYPE).source(sourceBuilder).requestCache(true);
+		String key = QueryCache.key(searchRequest);
+		BookFacets cached = queryCache.get(key);
+		if (cached != null)
+			return cached;
+
+		QueryCache.Ticket ticket = queryCache.begin();
+		try {
+			SearchResponse searchResponse = metrics.measure(Operation.SEARCH, 0, clientGuard.wrap(Operation.SEARCH, () -> hedgedReader.read(Operation.SEARCH,
+					(client, preference, listener) -> client.searchAsync(new SearchRequest(readIndex).types(TYPE).source(sourceBuilder).requestCache(true).preference(preference), listener))));
+			Aggregations aggregations = searchResponse.getAggregations();
+
+			List<BookFacets.Bucket> authors = aggregations.<Terms> get(AUTHORS).getBuckets().stream()
+					.map(bucket -> BookFacets.Bucket.of(bucket.getKeyAsString(), bucket.getDocCount())).collect(Collectors.toList());
+			List<BookFacets.Bucket> priceHistogram = aggregations.<Histogram> get(PRICE_HISTOGRAM).getBuckets().stream()
+					.map(bucket -> BookFacets.Bucket.of(bucket.getKeyAsString(), bucket.getDocCount())).collect(Collectors.toList());
+			Range ranges = aggregations.get(PRICE_RANGES);
+			List<BookFacets.Bucket> priceRanges = ranges == null ? new ArrayList<>()
+					: ranges.getBuckets().stream().map(bucket -> BookFacets.Bucket.of(bucket.getKeyAsString(), bucket.getDocCount())).collect(Collectors.toList());
+
+			Stats stats = aggregations.get(PRICE_STATS);
+			Map<String, Double> priceStats = new LinkedHashMap<>();
+			if (stats.getCount() > 0) {
+				priceStats.put("min", stats.getMin());
+				priceStats.put("max", stats.getMax());
+				priceStats.put("avg", stats.getAvg());
+				priceStats.put("sum", stats.getSum());
+			}
 
-		return searchResponse == null ? new ArrayList<>()
-				: Arrays.asList(searchResponse.getHits().getHits()).stream().map(searchHit -> objectMapper.convertValue(searchHit.getSourceAsMap(), Book.class))
-						.collect(Collectors.toList());
+			// Facets are never modified once built, so the cached instance is shared
+			BookFacets facets = BookFacets.of(searchResponse.getHits().getTotalHits(), authors, priceHistogram, priceRanges, priceStats);
+			queryCache.put(key, facets, QueryCache.weigh(authors.size() + priceHistogram.size() + priceRanges.size()), ticket);
+			return facets;
+		} catch (IOException | ElasticsearchException e) {
+			if (!isNotFound(e))
+				logger.error(e.getMessage());
+			return BookFacets.empty();
+		}
+	}
+
+	// Scores the hits on the text only, the other criteria are filters which ES caches per segment and reuses
+	// across searches. Every page is one search_after request of size + 1 hits, the extra hit only tells whether
+	// there is a next page, so deep pages cost as much as the first one
+	@Override
+	public SearchResult search(BookQuery bookQuery) {
+
+		boolean hasText = bookQuery.getText() != null && !bookQuery.getText().trim().isEmpty();
+		String sort = bookQuery.getSort() == null || bookQuery.getSort().isEmpty() ? (hasText ? RELEVANCE : TIE_BREAKER_FIELD) : bookQuery.getSort();
+		if (!RELEVANCE.equals(sort) && !SORT_FIELDS.containsKey(sort))
+			return SearchResult.error(String.format(statusMap.get(Status.SEARCH_INVALID), "Records cannot be sorted by " + sort + "."));
+
+		int size = Math.max(1, Math.min(bookQuery.getSize(), searchMaxSize));
+		QueryBuilder query = buildSearchQuery(bookQuery, hasText);
+		SearchSourceBuilder sourceBuilder;
+		if (RELEVANCE.equals(sort))
+			sourceBuilder = new SearchSourceBuilder().query(query)
+					.sort(SortBuilders.scoreSort().order(Boolean.TRUE.equals(bookQuery.getAscending()) ? SortOrder.ASC : SortOrder.DESC))
+					.sort(TIE_BREAKER_FIELD, SortOrder.ASC);
+		else
+			sourceBuilder = buildPageSource(query, SORT_FIELDS.get(sort), Boolean.FALSE.equals(bookQuery.getAscending()) ? SortOrder.DESC : SortOrder.ASC);
+		sourceBuilder.size(size + 1).trackTotalHits(bookQuery.isTrackTotalHits());
+
+		if (bookQuery.getCursor() != null && !bookQuery.getCursor().isEmpty()) {
+			try {
+				sourceBuilder.searchAfter(SearchCursor.decode(objectMapper, bookQuery.getCursor(), sourceBuilder.sorts().size()));
+			} catch (IllegalArgumentException e) {
+				return SearchResult.error(String.format(statusMap.get(Status.SEARCH_INVALID), e.getMessage()));
+			}
+		}
+
+		String key = QueryCache.key(new SearchRequest(readIndex).types(TYPE).source(sourceBuilder));
+		SearchResult cached = queryCache.get(key);
+		if (cached != null)
+			return SearchResult.of(cached.getMessage(), copyOf(cached.getBooks()), cached.getTotal(), cached.getCursor(), cached.getTookMillis());
+
+		QueryCache.Ticket ticket = queryCache.begin();
+		try {
+			SearchResponse searchResponse = metrics.measure(Operation.SEARCH, 0, clientGuard.wrap(Operation.SEARCH, () -> hedgedReader.read(Operation.SEARCH, (client, preference,
+					listener) -> client.searchAsync(new SearchRequest(readIndex).types(TYPE).source(sourceBuilder).preference(preference), listener))));
+			SearchHit[] hits = searchResponse.getHits().getHits();
+			List<IBook> books = Arrays.stream(hits).limit(size).map(this::toBook).collect(Collectors.toList());
+			String cursor = hits.length > size ? SearchCursor.encode(objectMapper, hits[size - 1].getSortValues()) : null;
+			long took = searchResponse.getTook().millis();
+
+			SearchResult result = SearchResult.of(String.format(statusMap.get(Status.SEARCH_SUCCESS), took), books, searchResponse.getHits().getTotalHits(),
+					cursor, took);
+			queryCache.put(key, SearchResult.of(result.getMessage(), copyOf(books), result.getTotal(), cursor, took), QueryCache.weigh(books), ticket);
+			return result;
+		} catch (IOException | ElasticsearchException e) {
+			logger.error(e.getMessage());
+			return SearchResult.error(statusMap.get(Status.SEARCH_ERROR));
+		}
+	}
+
+	// Lazily walks all records page by page through the Scroll API
+	@Override
+	public Stream<IBook> streamBookRecords() {
+
+		ScrollingHitIterator iterator = new ScrollingHitIterator(restHighLevelClient, metrics, clientGuard, buildScrollRequest(), TimeValue.timeValueSeconds(scrollKeepAliveSeconds));
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(iterator::close)
+				.map(this::toBook);
 	}
 
-	// Updates the contents of a particular Book Record
 	@Override
 	public IResultData updateBookRecord(IBook book) {
+		return updateBookRecord(book, writeConsistency);
+	}
+
+	// Updates the contents of a particular Book Record
+	@Override
+	public IResultData updateBookRecord(IBook book, WriteConsistency consistency) {
 
 		Optional<String> emptyField = getEmptyField(book);
 		if (emptyField.isPresent())
 			return ResultData.of(Boolean.FALSE, getStatusMessage(Status.EMPTY, emptyField.get()));
 
-		UpdateRequest updateRequest = new UpdateRequest(INDEX, TYPE, book.getId()).fetchSource(true);
 		UpdateResponse updateResponse = null;
 		try {
-			String bookJson = objectMapper.writeValueAsString(book);
-			updateRequest.doc(bookJson, XContentType.JSON);
-			updateResponse = restHighLevelClient.update(updateRequest);
-		} catch (JsonProcessingException e) {
+			UpdateRequest updateRequest = buildUpdateRequest(book).setRefreshPolicy(consistency.getRefreshPolicy());
+			updateResponse = metrics.measure(Operation.UPDATE, updateRequest.doc().source().length(), clientGuard.wrap(Operation.UPDATE, tracked(() -> restHighLevelClient.update(updateRequest))));
+		} catch (ElasticsearchException e) {
+			return toUpdateFailure(e, book.getId());
+		} catch (UncheckedIOException e) {
 			logger.error(e.getMessage());
 		} catch (java.io.IOException e) {
 			logger.error(e.getMessage());
 		}
 
-		return (updateResponse != null) && (updateResponse.getResult() == Result.UPDATED) ? ResultData.of(Boolean.FALSE, getStatusMessage(Status.UPDATE_SUCCESS, book.getId()))
-				: ResultData.of(Boolean.TRUE, getStatusMessage(Status.UPDATE_ERROR, book.getId()));
+		return toUpdateResult(updateResponse, book);
 	}
 
-	// Checks if the new book record matches with the existing book records
-	private boolean bookRecordExists(IBook book) {
+	@Override
+	public CompletableFuture<IResultData> updateBookRecordAsync(IBook book) {
+		return updateBookRecordAsync(book, writeConsistency);
+	}
 
-		SearchRequest searchRequest = new SearchRequest();
+	// Updates the contents of a particular Book Record without blocking the calling thread
+	@Override
+	public CompletableFuture<IResultData> updateBookRecordAsync(IBook book, WriteConsistency consistency) {
 
-		SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
-		sourceBuilder.query(
-				QueryBuilders.boolQuery().should(QueryBuilders.termQuery("isbn", book.getIsbn())).should(QueryBuilders.matchQuery("title", book.getTitle())).minimumShouldMatch("1")
+		Optional<String> emptyField = getEmptyField(book);
+		if (emptyField.isPresent())
+			return CompletableFuture.completedFuture(ResultData.of(Boolean.FALSE, getStatusMessage(Status.EMPTY, emptyField.get())));
 
-		);
-		searchRequest.source(sourceBuilder);
-		SearchResponse searchResponse = null;
-		int num_of_records = 0;
+		CompletableFuture<UpdateResponse> updateFuture = new CompletableFuture<>();
+		try {
+			UpdateRequest updateRequest = buildUpdateRequest(book).setRefreshPolicy(consistency.getRefreshPolicy());
+			metrics.measure(Operation.UPDATE, updateRequest.doc().source().length(), clientGuard.wrap(Operation.UPDATE, tracked(listener -> restHighLevelClient.updateAsync(updateRequest, listener))), completing(updateFuture));
+		} catch (UncheckedIOException e) {
+			updateFuture.completeExceptionally(e);
+		}
+
+		return updateFuture.thenApply(updateResponse -> toUpdateResult(updateResponse, book)).exceptionally(e -> toUpdateFailure(e, book.getId()));
+	}
+
+	@Override
+	public IResultData patchBookRecord(String id, Map<String, Object> fields, Long expectedVersion) {
+		return patchBookRecord(id, fields, expectedVersion, writeConsistency);
+	}
+
+	// Updates only the given fields of a Book Record. With an expected version the update is rejected as a conflict
+	// once the record has changed since it was read, without one concurrent updates are retried on the latest version
+	@Override
+	public IResultData patchBookRecord(String id, Map<String, Object> fields, Long expectedVersion, WriteConsistency consistency) {
+
+		Optional<String> invalidField = fields.keySet().stream().filter(field -> !PATCHABLE_FIELDS.contains(field)).findFirst();
+		if (invalidField.isPresent())
+			return UpdateResult.of(Boolean.TRUE, getStatusMessage(Status.PATCH_INVALID, invalidField.get()), 0);
+
+		Book patch;
+		try {
+			patch = objectMapper.convertValue(fields, Book.class);
+		} catch (IllegalArgumentException e) {
+			logger.error(e.getMessage());
+			return UpdateResult.of(Boolean.TRUE, getStatusMessage(Status.UPDATE_ERROR, id), 0);
+		}
+
+		Optional<String> emptyField = getEmptyPatchField(patch, fields.keySet());
+		if (emptyField.isPresent())
+			return UpdateResult.of(Boolean.TRUE, getStatusMessage(Status.EMPTY, emptyField.get()), 0);
 
+		indexManager.changing(id);
+		UpdateResponse updateResponse = null;
 		try {
-			searchResponse = restHighLevelClient.search(searchRequest);
-			num_of_records = searchResponse.getHits().getHits().length;
+			UpdateRequest updateRequest = new UpdateRequest(writeIndex(), TYPE, id).doc(fields).fetchSource(false).detectNoop(true)
+					.setRefreshPolicy(consistency.getRefreshPolicy());
+			if (expectedVersion != null)
+				updateRequest.version(expectedVersion);
+			else
+				updateRequest.retryOnConflict(retryOnConflict);
+
+			updateResponse = metrics.measure(Operation.UPDATE, updateRequest.doc().source().length(), clientGuard.wrap(Operation.UPDATE, tracked(() -> restHighLevelClient.update(updateRequest))));
+		} catch (ElasticsearchException e) {
+			return toUpdateFailure(e, id);
+		} catch (java.io.IOException | UncheckedIOException e) {
+			logger.error(e.getMessage());
+		}
+
+		return toPatchResult(updateResponse, id);
+	}
+
+	// Adapts an ES action listener to complete the given future
+	private static <T> ActionListener<T> completing(CompletableFuture<T> future) {
+		return ActionListener.wrap(future::complete, future::completeExceptionally);
+	}
+
+	// Registers a blocking write with the index manager while it is sent, so a running reindex can wait for it
+	private <T> CheckedSupplier<T, IOException> tracked(CheckedSupplier<T, IOException> call) {
+		return () -> {
+			long write = indexManager.beginWrite();
+			try {
+				return call.get();
+			} finally {
+				indexManager.endWrite(write);
+			}
+		};
+	}
+
+	// Registers a non blocking write with the index manager until ES answered it, or it failed to be sent at all
+	private <T> Consumer<ActionListener<T>> tracked(Consumer<ActionListener<T>> call) {
+		return listener -> {
+			long write = indexManager.beginWrite();
+			AtomicBoolean ended = new AtomicBoolean();
+			ActionListener<T> trackingListener = new ActionListener<T>() {
+
+				@Override
+				public void onResponse(T response) {
+					if (ended.compareAndSet(false, true))
+						indexManager.endWrite(write);
+					listener.onResponse(response);
+				}
+
+				@Override
+				public void onFailure(Exception e) {
+					if (ended.compareAndSet(false, true))
+						indexManager.endWrite(write);
+					listener.onFailure(e);
+				}
+			};
+
+			try {
+				call.accept(trackingListener);
+			} catch (RuntimeException e) {
+				trackingListener.onFailure(e);
+			}
+		};
+	}
+
+	// Collects the hits of every scroll page and requests the next page until the hits are exhausted. The scroll is
+	// cleared however it ends, on failure through the ID of the last page which arrived, null before the first one
+	private ActionListener<SearchResponse> collectingScroll(List<SearchHit> hits, String scrollId, CompletableFuture<List<SearchHit>> hitsFuture) {
+		return new ActionListener<SearchResponse>() {
+
+			@Override
+			public void onResponse(SearchResponse searchResponse) {
+				SearchHit[] pageHits = searchResponse.getHits().getHits();
+				if (pageHits.length == 0) {
+					clearScroll(searchResponse.getScrollId());
+					hitsFuture.complete(hits);
+					return;
+				}
+
+				Collections.addAll(hits, pageHits);
+				SearchScrollRequest scrollRequest = new SearchScrollRequest(searchResponse.getScrollId()).scroll(TimeValue.timeValueSeconds(scrollKeepAliveSeconds));
+				metrics.measure(Operation.SCROLL, 0, clientGuard.wrap(Operation.SCROLL, listener -> restHighLevelClient.searchScrollAsync(scrollRequest, listener)),
+						collectingScroll(hits, searchResponse.getScrollId(), hitsFuture));
+			}
+
+			@Override
+			public void onFailure(Exception e) {
+				clearScroll(scrollId);
+				hitsFuture.completeExceptionally(e);
+			}
+		};
+	}
+
+	// Frees the search context of a scroll on the server without waiting for it, instead of leaving it until its keep alive
+	private void clearScroll(String scrollId) {
+		if (scrollId == null)
+			return;
+		ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+		clearScrollRequest.addScrollId(scrollId);
+		restHighLevelClient.clearScrollAsync(clearScrollRequest, ActionListener.wrap(r -> {}, e -> logger.error(e.getMessage())));
+	}
+
+	// Reads of the same ID through different shard copies only differ in their preference
+	private GetRequest buildGetRequest(String id, String preference) {
+		return new GetRequest(readIndex, TYPE, id).realtime(true).preference(preference);
+	}
+
+	// Builds a create-only index request of a Book Record, generating its ID when missing or derived, so an existing
+	// record is never overwritten
+	private IndexRequest buildIndexRequest(IBook book) {
+		if (book.getId() == null || idStrategy.isDerived())
+			book.setId(idStrategy.generateId(book));
+
+		indexManager.changing(book.getId());
+		return new IndexRequest(writeIndex(), TYPE, book.getId()).source(encode(book), XContentType.JSON).opType(DocWriteRequest.OpType.CREATE);
+	}
+
+	// Builds an update request which sends the whole record, a record which would not change is left untouched
+	// and nothing is echoed back as the sent record is the new state. Concurrent updates are retried on the latest version
+	private UpdateRequest buildUpdateRequest(IBook book) {
+		indexManager.changing(book.getId());
+		return new UpdateRequest(writeIndex(), TYPE, book.getId()).fetchSource(false).detectNoop(true).retryOnConflict(retryOnConflict).doc(encode(book),
+				XContentType.JSON);
+	}
+
+	// Returns the write alias once it exists, writing to a missing alias would make ES create a plain index under its name
+	private String writeIndex() {
+		try {
+			indexManager.ensureIndex();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return writeIndex;
+	}
+
+	// Cached results are handed out as copies, so callers can never change what the next caller gets
+	private static List<IBook> copyOf(List<IBook> books) {
+		return books.stream().map(BookCache::copyOf).collect(Collectors.toList());
+	}
+
+	private byte[] encode(IBook book) {
+		return metrics.measure(Operation.ENCODE, () -> bookCodec.write(book));
+	}
+
+	// Builds a search request over all records, sorting on _doc is the cheapest order for scrolling as no scoring is involved
+	private SearchRequest buildScrollRequest() {
+		SearchRequest searchRequest = new SearchRequest(readIndex);
+		searchRequest.types(TYPE);
+		searchRequest.source(new SearchSourceBuilder().size(scrollPageSize).sort("_doc"));
+		searchRequest.scroll(TimeValue.timeValueSeconds(scrollKeepAliveSeconds));
+		return searchRequest;
+	}
+
+	// Write results refresh the cache with the written version, failed writes leave the record in an unknown state
+	private IResultData toAddResult(IndexResponse response, IBook book) {
+		queryCache.invalidate();
+		if ((response != null) && (response.getResult() == Result.CREATED)) {
+			bookCache.put(book.getId(), book, response.getVersion());
+			changeFeed.added(book);
+			return ResultData.of(Boolean.FALSE, getStatusMessage(Status.ADD_SUCCESS));
+		}
+		return ResultData.of(Boolean.TRUE, getStatusMessage(Status.ADD_ERROR));
+	}
+
+	private IResultData toDeleteResult(DeleteResponse deleteResponse, String id) {
+		queryCache.invalidate();
+		if ((deleteResponse != null) && (deleteResponse.getResult() == Result.DELETED)) {
+			bookCache.remove(id, deleteResponse.getVersion());
+			changeFeed.deleted(id);
+			return ResultData.of(Boolean.FALSE, getStatusMessage(Status.DELETE_SUCCESS, id));
+		}
+		bookCache.invalidate(id);
+		return ResultData.of(Boolean.TRUE, getStatusMessage(Status.DELETE_ERROR, id));
+	}
+
+	private IResultData toUpdateResult(UpdateResponse updateResponse, IBook book) {
+		if (updateResponse == null || updateResponse.getResult() != Result.NOOP)
+			queryCache.invalidate();
+		if ((updateResponse != null) && (updateResponse.getResult() == Result.UPDATED || updateResponse.getResult() == Result.NOOP)) {
+			bookCache.put(book.getId(), book, updateResponse.getVersion());
+			if (updateResponse.getResult() == Result.UPDATED)
+				changeFeed.updated(book.getId(), book);
+			Status status = updateResponse.getResult() == Result.NOOP ? Status.UPDATE_NOOP : Status.UPDATE_SUCCESS;
+			return UpdateResult.of(Boolean.FALSE, getStatusMessage(status, book.getId()), updateResponse.getVersion());
+		}
+		bookCache.invalidate(book.getId());
+		return UpdateResult.of(Boolean.TRUE, getStatusMessage(Status.UPDATE_ERROR, book.getId()), 0);
+	}
+
+	// Only part of the record is known after a patch, so the cached record is replaced by a tombstone at the patched
+	// version rather than refreshed, which keeps a read that started before the patch from caching the old record
+	private IResultData toPatchResult(UpdateResponse updateResponse, String id) {
+		if (updateResponse == null || updateResponse.getResult() != Result.NOOP)
+			queryCache.invalidate();
+		if ((updateResponse != null) && (updateResponse.getResult() == Result.UPDATED || updateResponse.getResult() == Result.NOOP)) {
+			if (updateResponse.getResult() == Result.UPDATED) {
+				bookCache.remove(id, updateResponse.getVersion());
+				changeFeed.updated(id, null);
+			}
+			Status status = updateResponse.getResult() == Result.NOOP ? Status.UPDATE_NOOP : Status.UPDATE_SUCCESS;
+			return UpdateResult.of(Boolean.FALSE, getStatusMessage(status, id), updateResponse.getVersion());
+		}
+		bookCache.invalidate(id);
+		return UpdateResult.of(Boolean.TRUE, getStatusMessage(Status.UPDATE_ERROR, id), 0);
+	}
+
+	// A version conflict is reported as such so the caller can reload the record, any other failure is a plain update error
+	private IResultData toUpdateFailure(Throwable e, String id) {
+		Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+		logger.error(cause.getMessage());
+		bookCache.invalidate(id);
+		queryCache.invalidate();
+		if (isConflict(cause))
+			return UpdateResult.conflict(getStatusMessage(Status.UPDATE_CONFLICT, id));
+		return UpdateResult.of(Boolean.TRUE, getStatusMessage(Status.UPDATE_ERROR, id), 0);
+	}
+
+	// A create fails with a conflict when a record with the ID exists, an update when the record changed in the meantime
+	private static boolean isConflict(Throwable e) {
+		Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+		return cause instanceof ElasticsearchException && ((ElasticsearchException) cause).status() == RestStatus.CONFLICT;
+	}
+
+	// A search fails with not found while the index behind the read alias does not exist yet
+	private static boolean isNotFound(Throwable e) {
+		Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+		return cause instanceof ElasticsearchException && ((ElasticsearchException) cause).status() == RestStatus.NOT_FOUND;
+	}
+
+	// Builds a Bulk Processor which reports the outcome of every bulk item into results
+	private BulkProcessor.Listener buildBulkListener(List<IResultData> results) {
+
+		return new BulkProcessor.Listener() {
+
+			@Override
+			public void beforeBulk(long executionId, BulkRequest request) {
+				logger.debug("Executing bulk [{}] with {} requests", executionId, request.numberOfActions());
+			}
+
+			@Override
+			public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+				queryCache.invalidate();
+				boolean written = false;
+				for (BulkItemResponse item : response) {
+					if (item.isFailed()) {
+						logger.error(item.getFailureMessage());
+						results.add(ResultData.of(Boolean.TRUE, getStatusMessage(Status.ADD_ITEM_ERROR, item.getId())));
+					} else {
+						results.add(ResultData.of(Boolean.FALSE, getStatusMessage(Status.ADD_ITEM_SUCCESS, item.getId())));
+						written = true;
+					}
+				}
+				// A bulk is announced as a whole, subscribers reload rather than receive one event per record
+				if (written)
+					changeFeed.reload();
+			}
+
+			@Override
+			public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+				queryCache.invalidate();
+				logger.error(failure.getMessage());
+				request.requests().forEach(item -> results.add(ResultData.of(Boolean.TRUE, getStatusMessage(Status.ADD_ITEM_ERROR, item.id()))));
+			}
+		};
+	}
+
+	// Counts the outcome of every imported record instead of keeping a result per record
+	private BulkProcessor.Listener buildImportListener(ImportReport report) {
+
+		return new BulkProcessor.Listener() {
+
+			@Override
+			public void beforeBulk(long executionId, BulkRequest request) {
+				logger.debug("Executing import bulk [{}] with {} requests", executionId, request.numberOfActions());
+			}
+
+			@Override
+			public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+				queryCache.invalidate();
+				boolean written = false;
+				for (BulkItemResponse item : response) {
+					if (item.isFailed()) {
+						report.failed(item.getId(), item.getFailureMessage());
+					} else {
+						report.imported();
+						written = true;
+					}
+				}
+				if (written)
+					changeFeed.reload();
+			}
+
+			@Override
+			public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+				queryCache.invalidate();
+				logger.error(failure.getMessage());
+				request.requests().forEach(item -> report.failed(item.id(), failure.getMessage()));
+			}
+		};
+	}
+
+	private BulkProcessor buildBulkProcessor(BulkProcessor.Listener listener) {
+
+		// Backoff only retries bulk items rejected with EsRejectedExecutionException, never a failed bulk as a whole, so
+		// bulks wait for the guard instead of being rejected by it. The wait holds back the thread adding the records
+		return BulkProcessor.builder(
+				(BulkRequest request, ActionListener<BulkResponse> bulkListener) -> metrics.measure(Operation.BULK, request.estimatedSizeInBytes(),
+						clientGuard.wrapWaiting(Operation.BULK, tracked(guardedListener -> restHighLevelClient.bulkAsync(request, guardedListener))), bulkListener),
+				listener).setBulkActions(bulkActions)
+				.setBulkSize(new ByteSizeValue(bulkSizeMb, ByteSizeUnit.MB)).setFlushInterval(TimeValue.timeValueSeconds(bulkFlushIntervalSeconds))
+				.setConcurrentRequests(bulkConcurrentRequests)
+				.setBackoffPolicy(BackoffPolicy.exponentialBackoff(TimeValue.timeValueMillis(bulkBackoffDelayMillis), bulkBackoffRetries)).build();
+	}
+
+	// Matches the search text as a prefix of title or author words, or of the ISBN and ID
+	private QueryBuilder buildPageQuery(String searchText) {
+		if (searchText == null || searchText.trim().isEmpty())
+			return QueryBuilders.matchAllQuery();
+
+		String text = searchText.trim();
+		return QueryBuilders.boolQuery().should(QueryBuilders.multiMatchQuery(text, "title", "author").type(MultiMatchQueryBuilder.Type.PHRASE_PREFIX))
+				.should(QueryBuilders.prefixQuery("isbn", text)).should(QueryBuilders.prefixQuery(TIE_BREAKER_FIELD, text)).minimumShouldMatch(1);
+	}
+
+	// Matches all words of the text across title and author, the remaining criteria go into the filter context
+	private QueryBuilder buildSearchQuery(BookQuery bookQuery, boolean hasText) {
+		BoolQueryBuilder query = QueryBuilders.boolQuery();
+		if (hasText)
+			query.must(QueryBuilders.multiMatchQuery(bookQuery.getText().trim(), "title", "author").type(MultiMatchQueryBuilder.Type.CROSS_FIELDS)
+					.operator(Operator.AND));
+		if (bookQuery.getIsbn() != null && !bookQuery.getIsbn().trim().isEmpty())
+			query.filter(QueryBuilders.termQuery("isbn", bookQuery.getIsbn().trim()));
+		if (bookQuery.getAuthor() != null && !bookQuery.getAuthor().trim().isEmpty())
+			query.filter(QueryBuilders.termQuery("author.keyword", bookQuery.getAuthor().trim()));
+		if (bookQuery.getMinPrice() != null || bookQuery.getMaxPrice() != null)
+			query.filter(QueryBuilders.rangeQuery("price").gte(bookQuery.getMinPrice()).lte(bookQuery.getMaxPrice()));
+		return query;
+	}
+
+	// An empty property binds to a single blank boundary, blank entries are skipped so it turns off the range facet.
+	// Parsed once at startup, so a malformed boundary fails the application instead of every facet request
+	private double[] parsePriceBoundaries() {
+		double[] boundaries = Arrays.stream(facetPriceRanges).map(String::trim).filter(boundary -> !boundary.isEmpty()).mapToDouble(boundary -> {
+			try {
+				return Double.parseDouble(boundary);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Price range boundary '" + boundary + "' of elasticsearch.facets.price-ranges is not a number.", e);
+			}
+		}).sorted().toArray();
+
+		for (int i = 0; i < boundaries.length; i++) {
+			if (Double.isInfinite(boundaries[i]) || Double.isNaN(boundaries[i]))
+				throw new IllegalArgumentException("Price range boundaries of elasticsearch.facets.price-ranges must be finite.");
+			if (i > 0 && boundaries[i] == boundaries[i - 1])
+				throw new IllegalArgumentException("Price range boundary " + boundaries[i] + " of elasticsearch.facets.price-ranges is repeated.");
+		}
+		return boundaries;
+	}
+
+	// Turns the configured price boundaries into consecutive ranges, open ended below the first and above the last
+	private RangeAggregationBuilder buildPriceRanges(double[] boundaries) {
+		RangeAggregationBuilder ranges = AggregationBuilders.range(PRICE_RANGES).field("price");
+		for (int i = 0; i <= boundaries.length; i++) {
+			if (i == 0)
+				ranges.addUnboundedTo(boundaries[i]);
+			else if (i == boundaries.length)
+				ranges.addUnboundedFrom(boundaries[i - 1]);
+			else
+				ranges.addRange(boundaries[i - 1], boundaries[i]);
+		}
+		return ranges;
+	}
+
+	// Sorts on the requested field with the unique ID as tie breaker so search_after positions are stable
+	private SearchSourceBuilder buildPageSource(QueryBuilder query, String field, SortOrder order) {
+		SearchSourceBuilder sourceBuilder = new SearchSourceBuilder().query(query).sort(field, order);
+		if (!TIE_BREAKER_FIELD.equals(field))
+			sourceBuilder.sort(TIE_BREAKER_FIELD, SortOrder.ASC);
+		return sourceBuilder;
+	}
+
+	// Skips over the first offset records without fetching their source and returns the sort values of the last one
+	private Object[] seekSortValues(QueryBuilder query, String field, SortOrder order, int offset) throws IOException {
+
+		Object[] searchAfter = null;
+		int remaining = offset;
+		while (remaining > 0) {
+			SearchSourceBuilder sourceBuilder = buildPageSource(query, field, order).size(Math.min(remaining, maxResultWindow)).fetchSource(false)
+					.trackTotalHits(false);
+			if (searchAfter != null)
+				sourceBuilder.searchAfter(searchAfter);
+
+			SearchRequest searchRequest = new SearchRequest(readIndex).types(TYPE).source(sourceBuilder);
+			SearchHit[] hits = metrics.measure(Operation.SEARCH, 0, clientGuard.wrap(Operation.SEARCH, () -> restHighLevelClient.search(searchRequest))).getHits().getHits();
+			if (hits.length == 0)
+				return null;
+
+			searchAfter = hits[hits.length - 1].getSortValues();
+			remaining -= hits.length;
+		}
+		return searchAfter;
+	}
+
+	// Maps a search hit's source to a Book Object
+	private IBook toBook(SearchHit searchHit) {
+		return metrics.measure(Operation.DECODE, () -> bookCodec.read(searchHit.getSourceRef()));
+	}
+
+	// Maps a get response's source to a Book Object
+	private IBook toBook(GetResponse getResponse) {
+		return getResponse.isExists() ? metrics.measure(Operation.DECODE, () -> bookCodec.read(getResponse.getSourceAsBytesRef())) : null;
+	}
+
+	// Maps a get response's source to a Book Object and caches it at the version it was read
+	private IBook toCachedBook(GetResponse getResponse) {
+		IBook book = toBook(getResponse);
+		if (getResponse.isExists())
+			bookCache.put(getResponse.getId(), book, getResponse.getVersion());
+		return book;
+	}
+
+	// Sends a multi get through the _mget endpoint, which the high level client of this ES version does not offer.
+	// Only complete sources are cached, a book read with a subset of its fields must not be served as the whole record
+	private Map<String, IBook> multiGet(MultiGetRequest multiGetRequest, boolean fullSource) throws IOException {
+
+		XContentBuilder builder = XContentFactory.jsonBuilder().startObject().startArray("docs");
+		for (MultiGetRequest.Item item : multiGetRequest) {
+			builder.startObject().field("_index", item.index()).field("_type", item.type()).field("_id", item.id()).field("_source");
+			item.fetchSourceContext().toXContent(builder, ToXContent.EMPTY_PARAMS);
+			builder.endObject();
+		}
+		String body = builder.endArray().endObject().string();
+
+		Map<String, String> params = Collections.singletonMap("realtime", String.valueOf(multiGetRequest.realtime()));
+		Response response = metrics.measure(Operation.MULTI_GET, body.length(), clientGuard.wrap(Operation.MULTI_GET, () -> restHighLevelClient.getLowLevelClient().performRequest("POST", "/_mget",
+				params, new NStringEntity(body, ContentType.APPLICATION_JSON))));
+
+		Map<String, IBook> books = new HashMap<>();
+		for (JsonNode doc : objectMapper.readTree(response.getEntity().getContent()).path("docs")) {
+			if (doc.has("error"))
+				logger.error("Multi get of {} failed: {}", doc.path("_id").asText(), doc.get("error"));
+			if (!doc.path("found").asBoolean())
+				continue;
+
+			String id = doc.get("_id").asText();
+			IBook book = metrics.measure(Operation.DECODE, () -> bookCodec.read(doc.get("_source")));
+			book.setId(id);
+			if (fullSource)
+				bookCache.put(id, book, doc.path("_version").asLong());
+			books.put(id, book);
+		}
+		return books;
+	}
+
+	// Deletes every document of the index in parallel slices and returns the number of deleted documents
+	private long deleteByQuery() throws IOException {
+
+		String index = writeIndex();
+		Map<String, String> params = new HashMap<>();
+		params.put("slices", purgeSlices);
+		params.put("conflicts", purgeConflicts);
+		params.put("refresh", "true");
+
+		String body = "{\"query\":{\"match_all\":{}}}";
+		Response response = metrics.measure(Operation.DELETE_BY_QUERY, body.length(), clientGuard.wrap(Operation.DELETE_BY_QUERY, () -> restHighLevelClient.getLowLevelClient().performRequest("POST",
+				"/" + index + "/" + TYPE + "/_delete_by_query", params, new NStringEntity(body, ContentType.APPLICATION_JSON))));
+
+		Map<?, ?> result = objectMapper.readValue(response.getEntity().getContent(), Map.class);
+		Object failures = result.get("failures");
+		if (failures instanceof List && !((List<?>) failures).isEmpty())
+			logger.error("Delete by query failures: {}", failures);
+
+		return ((Number) result.get("deleted")).longValue();
+	}
+
+	// Drops and recreates the index behind the aliases, which is far cheaper than deleting its documents one by one
+	private long truncateIndex() throws IOException {
+
+		SearchRequest countRequest = new SearchRequest(readIndex).types(TYPE).source(new SearchSourceBuilder().size(0));
+		long count;
+		try {
+			count = metrics.measure(Operation.SEARCH, 0, clientGuard.wrap(Operation.SEARCH, () -> restHighLevelClient.search(countRequest))).getHits().getTotalHits();
+		} catch (ElasticsearchStatusException e) {
+			if (e.status() != RestStatus.NOT_FOUND)
+				throw e;
+			count = 0;
+		}
+
+		indexManager.recreateIndex();
+		return count;
+	}
+
+	// Makes every write so far visible to searches with a single refresh
+	private void refreshIndex() {
+		try {
+			restHighLevelClient.getLowLevelClient().performRequest("POST", "/" + writeIndex + "/_refresh");
 		} catch (IOException e) {
 			logger.error(e.getMessage());
 		}
+	}
+
+	// Checks if the new book record matches with the existing book records, there are none while the index does not
+	// exist yet. Any other failure is thrown, as it leaves open whether the record exists
+	private boolean bookRecordExists(IBook book) throws IOException {
+		try {
+			SearchRequest existsRequest = buildExistsRequest(book);
+			return hasHits(metrics.measure(Operation.EXISTS, 0, clientGuard.wrap(Operation.EXISTS, () -> restHighLevelClient.search(existsRequest))));
+		} catch (ElasticsearchException e) {
+			if (isNotFound(e))
+				return false;
+			throw e;
+		}
+	}
+
+	// Counts at most one record with the same ISBN or a matching title in filter context, no hits are scored or fetched.
+	// The title is matched through the analyzer as it always was, so titles differing only in case or spacing count too
+	private SearchRequest buildExistsRequest(IBook book) {
+
+		SearchRequest searchRequest = new SearchRequest(readIndex).types(TYPE);
+
+		SearchSourceBuilder sourceBuilder = new SearchSourceBuilder().size(0).terminateAfter(1);
+		sourceBuilder.query(QueryBuilders.boolQuery().filter(QueryBuilders.boolQuery().should(QueryBuilders.termQuery("isbn", book.getIsbn()))
+				.should(QueryBuilders.matchQuery("title", book.getTitle())).minimumShouldMatch(1)));
+		searchRequest.source(sourceBuilder);
+		return searchRequest;
+	}
+
+	private boolean hasHits(SearchResponse searchResponse) {
+		return searchResponse.getHits().getTotalHits() > 0;
+	}
+
+	// Only the fields present in a patch have to be filled
+	private Optional<String> getEmptyPatchField(IBook patch, Set<String> fields) {
+		String field = null;
 
-		return num_of_records > 0;
+		if (fields.contains("isbn") && isEmpty(patch.getIsbn()))
+			field = "ISBN";
+		else if (fields.contains("title") && isEmpty(patch.getTitle()))
+			field = "Title";
+		else if (fields.contains("author") && isEmpty(patch.getAuthor()))
+			field = "Author";
+
+		return Optional.ofNullable(field);
+	}
+
+	private static boolean isEmpty(String value) {
+		return value == null || value.isEmpty();
 	}
 
 	private Optional<String> getEmptyField(IBook book) {
 		String field = null;
 
-		if (book.getIsbn().isEmpty())
+		if (isEmpty(book.getIsbn()))
 			field = "ISBN";
-		else if (book.getTitle().isEmpty())
+		else if (isEmpty(book.getTitle()))
 			field = "Title";
-		else if (book.getAuthor().isEmpty())
+		else if (isEmpty(book.getAuthor()))
 			field = "Author";
 
 		return Optional.ofNullable(field);
@@ -202,22 +1396,36 @@ public class BookService implements IBookService {
 		return strings.length > 0 ? String.format(statusMap.get(status), strings[0]) : statusMap.get(status);
 	}
 
+	@Override
+	public Map<String, Long> getCacheStats() {
+		Map<String, Long> stats = bookCache.stats();
+		queryCache.stats().forEach((name, value) -> stats.put("query" + Character.toUpperCase(name.charAt(0)) + name.substring(1), value));
+		return stats;
+	}
+
+	@Override
+	public Map<String, Object> getOperationStats() {
+		return metrics.snapshot();
+	}
+
 	// Loads data into Elastic search on application startup
+	// Only sets up in memory state, everything that needs ES is done in the background by the BookSeeder
 	@PostConstruct
-	private void loadData() {
+	private void init() {
 
-		addBookRecord(Book.of("9781501151774", "The Woman in Cabin 10", "Ruth Ware", 41));
-		addBookRecord(Book.of("9780385514231", "Origin", "Dan Brown", 35));
-		addBookRecord(Book.of("9780735253308", "The Handmaid's Tale", "Margaret Atwood", 36));
-		addBookRecord(Book.of("9781101967683", "The Whistler", "John Grisham", 55));
-		addBookRecord(Book.of("9780062654199", "The Alice Network", "Kate Quinn", 60));
-		addBookRecord(Book.of("9780385689632", "Into the Water", "Paula Hawkins", 47));
-		addBookRecord(Book.of("9780385543026", "Camino Island", "John Grisham", 35));
-		addBookRecord(Book.of("9780525954972", "A Column of Fire", "Ken Follett", 43));
-		addBookRecord(Book.of("9781250080400", "The Nightingale", "Kristin Hannah", 39));
-
-		logger.info("Books data has been loaded into Elastic Search Engine");
+		bookCache = new BookCache(cacheMaxEntries, TimeUnit.SECONDS.toMillis(cacheTtlSeconds));
+		queryCache = new QueryCache(queryCacheMaxBytes, queryCacheMaxStalenessMillis, queryCacheSettleMillis);
+		priceBoundaries = parsePriceBoundaries();
+		purgeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "book-purge");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
 
+	@PreDestroy
+	private void destroy() {
+		purgeExecutor.shutdownNow();
 	}
 
 	// Initializes and stores all status messages in map for quick lookup
@@ -226,16 +1434,32 @@ public class BookService implements IBookService {
 		statusMap.put(Status.EXISTS, "Book's ISBN and/or Title matches with the existing record.");
 		statusMap.put(Status.ADD_SUCCESS, "Book record has been successfully added.");
 		statusMap.put(Status.ADD_ERROR, "Error occurred while adding book record.");
+		statusMap.put(Status.ADD_ITEM_SUCCESS, "Book record with ID: %s has been successfully added.");
+		statusMap.put(Status.ADD_ITEM_ERROR, "Error adding book record with ID: %s");
 		statusMap.put(Status.DELETE_SUCCESS, "Book record with ID: %s has been successfully deleted.");
 		statusMap.put(Status.DELETE_ERROR, "Error deleting book record with ID: %s");
+		statusMap.put(Status.DELETE_BLOCKED, "Book record with ID: %s cannot be deleted while the index is being rebuilt, try again later.");
 		statusMap.put(Status.UPDATE_SUCCESS, "Book record with ID: %s has been successfully updated.");
 		statusMap.put(Status.UPDATE_ERROR, "Error updating book record with ID: %s");
+		statusMap.put(Status.UPDATE_NOOP, "Book record with ID: %s is already up to date.");
+		statusMap.put(Status.UPDATE_CONFLICT, "Book record with ID: %s has been changed in the meantime, reload it and try again.");
+		statusMap.put(Status.PATCH_INVALID, "%s field cannot be updated.");
 		statusMap.put(Status.EMPTY, " %s field cannot be empty.");
+		statusMap.put(Status.PURGE_SUCCESS, "%d book records have been deleted in %d ms.");
+		statusMap.put(Status.PURGE_ERROR, "Error deleting all book records.");
+		statusMap.put(Status.PURGE_BLOCKED, "Book records cannot be deleted while the index is being rebuilt, try again later.");
+		statusMap.put(Status.IMPORT_SUCCESS, "%d of %d book records have been imported, %d invalid and %d failed, in %d ms.");
+		statusMap.put(Status.IMPORT_ERROR, "Import stopped after %d of %d book records: %s");
+		statusMap.put(Status.SEARCH_SUCCESS, "Search has been completed in %d ms.");
+		statusMap.put(Status.SEARCH_INVALID, "Invalid search: %s");
+		statusMap.put(Status.SEARCH_ERROR, "Error occurred while searching book records.");
 
 	}
 
 	private enum Status {
-		EMPTY, EXISTS, ADD_ERROR, ADD_SUCCESS, DELETE_ERROR, DELETE_SUCCESS, UPDATE_ERROR, UPDATE_SUCCESS
+		EMPTY, EXISTS, ADD_ERROR, ADD_SUCCESS, ADD_ITEM_ERROR, ADD_ITEM_SUCCESS, DELETE_ERROR, DELETE_SUCCESS, DELETE_BLOCKED, PURGE_ERROR, PURGE_SUCCESS, PURGE_BLOCKED, UPDATE_ERROR, UPDATE_SUCCESS,
+		UPDATE_NOOP, UPDATE_CONFLICT, PATCH_INVALID, IMPORT_SUCCESS, IMPORT_ERROR, SEARCH_SUCCESS, SEARCH_INVALID,
+		SEARCH_ERROR
 	}
 
 }
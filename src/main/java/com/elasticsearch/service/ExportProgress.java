@@ -0,0 +1,86 @@
+package com.elasticsearch.service;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Progress of a running export per slice. Every slice worker only updates its own counters, the totals are
+ * known once a slice has fetched its first page.
+ */
+
+class ExportProgress {
+
+	private final long start = System.nanoTime();
+	private final int slices;
+	private final AtomicLongArray exported;
+	private final AtomicLongArray totals;
+	private final AtomicIntegerArray done;
+	private volatile long tookNanos = -1;
+
+	ExportProgress(int slices) {
+		this.slices = slices;
+		this.exported = new AtomicLongArray(slices);
+		this.totals = new AtomicLongArray(slices);
+		this.done = new AtomicIntegerArray(slices);
+		for (int slice = 0; slice < slices; slice++)
+			totals.set(slice, -1);
+	}
+
+	// Only the total of the first page counts
+	void total(int slice, long total) {
+		totals.compareAndSet(slice, -1, total);
+	}
+
+	void exported(int slice, long count) {
+		exported.addAndGet(slice, count);
+	}
+
+	void done(int slice) {
+		done.set(slice, 1);
+	}
+
+	void finish() {
+		tookNanos = System.nanoTime() - start;
+	}
+
+	int getSlices() {
+		return slices;
+	}
+
+	long getExported() {
+		long sum = 0;
+		for (int slice = 0; slice < slices; slice++)
+			sum += exported.get(slice);
+		return sum;
+	}
+
+	long getTookMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(tookNanos < 0 ? System.nanoTime() - start : tookNanos);
+	}
+
+	Map<String, Object> snapshot() {
+		long exportedSum = getExported();
+		long tookMillis = getTookMillis();
+
+		Map<String, Object> snapshot = new LinkedHashMap<>();
+		snapshot.put("running", tookNanos < 0);
+		snapshot.put("slices", slices);
+		snapshot.put("exported", exportedSum);
+		snapshot.put("tookMillis", tookMillis);
+		snapshot.put("recordsPerSecond", tookMillis == 0 ? 0 : exportedSum * 1000 / tookMillis);
+
+		List<Map<String, Object>> perSlice = new ArrayList<>();
+		for (int slice = 0; slice < slices; slice++) {
+			Map<String, Object> progress = new LinkedHashMap<>();
+			progress.put("slice", slice);
+			progress.put("exported", exported.get(slice));
+			progress.put("total", totals.get(slice));
+			progress.put("done", done.get(slice) == 1);
+			perSlice.add(progress);
+		}
+		snapshot.put("perSlice", perSlice);
+		return snapshot;
+	}
+
+}
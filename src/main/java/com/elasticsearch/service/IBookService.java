@@ -1,6 +1,9 @@
 package com.elasticsearch.service;
 
-import java.util.List;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 import com.elasticsearch.model.*;
 
@@ -13,9 +16,65 @@ public interface IBookService {
 	public IResultData addBookRecord(IBook book);
 
 	/**
-	 * Deletes all book records of Index: bookdata and Type: books
+	 * @param book
+	 *        Adds book record into ES, returning once the record is as visible as the given consistency requires
+	 */
+	public IResultData addBookRecord(IBook book, WriteConsistency consistency);
+
+	/**
+	 * @param book
+	 *        Adds book record into ES without blocking the calling thread
+	 */
+	public CompletableFuture<IResultData> addBookRecordAsync(IBook book);
+
+	/**
+	 * @param book
+	 *        Adds book record into ES with the given consistency without blocking the calling thread
+	 */
+	public CompletableFuture<IResultData> addBookRecordAsync(IBook book, WriteConsistency consistency);
+
+	/**
+	 * @param books
+	 *        Adds book records into ES in bulk and returns the result of every record
 	 */
-	public void deleteAll();
+	public List<IResultData> addBookRecords(Stream<IBook> books);
+
+	/**
+	 * @param books
+	 *        Adds book records into ES in bulk and refreshes once at the end unless the consistency is NONE
+	 */
+	public List<IResultData> addBookRecords(Stream<IBook> books, WriteConsistency consistency);
+
+	/**
+	 * @param input
+	 *        Imports the book records of an uploaded catalog into ES in bulk, reading one record at a time, and
+	 *        returns the counts of imported, invalid and failed records with the first errors
+	 */
+	public ImportResult importBookRecords(InputStream input, ImportFormat format);
+
+	/**
+	 * Deletes all book records of Index: bookdata and Type: books using the configured purge mode
+	 */
+	public PurgeResult deleteAll();
+
+	/**
+	 * @param mode
+	 *        Deletes all book records of Index: bookdata and Type: books using the given purge mode
+	 */
+	public PurgeResult deleteAll(PurgeMode mode);
+
+	/**
+	 * Deletes all book records of Index: bookdata and Type: books using the configured purge mode without blocking
+	 * the calling thread
+	 */
+	public CompletableFuture<PurgeResult> deleteAllAsync();
+
+	/**
+	 * @param mode
+	 *        Deletes all book records of Index: bookdata and Type: books using the given purge mode without blocking
+	 *        the calling thread
+	 */
+	public CompletableFuture<PurgeResult> deleteAllAsync(PurgeMode mode);
 
 	/**
 	 * @param id
@@ -23,21 +82,124 @@ public interface IBookService {
 	 */
 	public IResultData deleteBookRecord(String id);
 
+	/**
+	 * @param id
+	 *        Deletes book record from ES with the given consistency
+	 */
+	public IResultData deleteBookRecord(String id, WriteConsistency consistency);
+
+	/**
+	 * @param id
+	 *        Deletes book record from ES without blocking the calling thread
+	 */
+	public CompletableFuture<IResultData> deleteBookRecordAsync(String id);
+
+	/**
+	 * @param id
+	 *        Deletes book record from ES with the given consistency without blocking the calling thread
+	 */
+	public CompletableFuture<IResultData> deleteBookRecordAsync(String id, WriteConsistency consistency);
+
 	/**
 	 * @param id
 	 *        Retrieves a book record from ES by ID
 	 */
 	public IBook getBookRecord(String id);
 
+	/**
+	 * @param id
+	 *        Retrieves a book record from ES by ID without blocking the calling thread
+	 */
+	public CompletableFuture<IBook> getBookRecordAsync(String id);
+
+	/**
+	 * Returns the hit, miss and eviction counters of the book record cache
+	 */
+	public Map<String, Long> getCacheStats();
+
+	/**
+	 * Returns latency, server side took time, payload size and error metrics of every ES operation
+	 */
+	public Map<String, Object> getOperationStats();
+
 	/**
 	 * Retrieves all book records from ES
 	 */
 	public List<IBook> getBookRecords();
 
+	/**
+	 * @param ids
+	 *        Gets the book records with these IDs from ES in a single request
+	 * @param fields
+	 *        Limits the returned source to these fields, all fields are returned when none are given
+	 */
+	public List<IBook> getBookRecords(Collection<String> ids, String... fields);
+
+	/**
+	 * Retrieves all book records from ES without blocking the calling thread
+	 */
+	public CompletableFuture<List<IBook>> getBookRecordsAsync();
+
+	/**
+	 * Retrieves one page of book records from ES sorted by sortField and filtered by searchText, throws an
+	 * IllegalArgumentException when from or size is negative or from lies beyond the deepest page which may be read
+	 */
+	public BookPage getBookRecords(int from, int size, String sortField, boolean ascending, String searchText);
+
+	/**
+	 * @param bookQuery
+	 *        Searches the book records matching this query, one page at a time through the cursor of the previous page
+	 */
+	public SearchResult search(BookQuery bookQuery);
+
+	/**
+	 * @param searchText
+	 *        Aggregates the book records matching this text by author and price without fetching any records
+	 */
+	public BookFacets getFacets(String searchText);
+
+	/**
+	 * Lazily retrieves all book records from ES one page at a time, the stream must be closed to release
+	 * the scroll context
+	 */
+	public Stream<IBook> streamBookRecords();
+
 	/**
 	 * @param book
 	 *        Updates a book record in ES
 	 */
 	public IResultData updateBookRecord(IBook book);
 
+	/**
+	 * @param book
+	 *        Updates a book record in ES with the given consistency
+	 */
+	public IResultData updateBookRecord(IBook book, WriteConsistency consistency);
+
+	/**
+	 * @param book
+	 *        Updates a book record in ES without blocking the calling thread
+	 */
+	public CompletableFuture<IResultData> updateBookRecordAsync(IBook book);
+
+	/**
+	 * @param book
+	 *        Updates a book record in ES with the given consistency without blocking the calling thread
+	 */
+	public CompletableFuture<IResultData> updateBookRecordAsync(IBook book, WriteConsistency consistency);
+
+	/**
+	 * @param id
+	 *        Updates only the given fields of this book record in ES
+	 * @param expectedVersion
+	 *        Rejects the update as a conflict unless the record still has this version, null skips the check
+	 */
+	public IResultData patchBookRecord(String id, Map<String, Object> fields, Long expectedVersion);
+
+	/**
+	 * @param id
+	 *        Updates only the given fields of this book record in ES with the given consistency
+	 */
+	public IResultData patchBookRecord(String id, Map<String, Object> fields, Long expectedVersion, WriteConsistency consistency);
+
 }
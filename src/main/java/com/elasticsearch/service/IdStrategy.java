@@ -0,0 +1,43 @@
+package com.elasticsearch.service;
+
+import com.elasticsearch.model.*;
+
+/**
+ * How Book Records created without an ID get one: FLAKE generates compact time ordered IDs, ISBN derives the ID
+ * from the ISBN without hyphens and spaces. With ISBN every record gets its derived ID even when one was given,
+ * so adding a book whose ISBN is already stored fails atomically in ES, across instances, instead of relying on
+ * the duplicate check alone. The ID keeps the ISBN the record was created with.
+ */
+
+public enum IdStrategy {
+
+	FLAKE {
+		@Override
+		public String generateId(IBook book) {
+			return FlakeId.next();
+		}
+	},
+	ISBN {
+		@Override
+		public String generateId(IBook book) {
+			StringBuilder id = new StringBuilder(book.getIsbn().length());
+			for (char c : book.getIsbn().toCharArray())
+				if (c != '-' && !Character.isWhitespace(c))
+					id.append(Character.toUpperCase(c));
+			return id.length() > 0 ? id.toString() : book.getIsbn();
+		}
+
+		@Override
+		public boolean isDerived() {
+			return true;
+		}
+	};
+
+	public abstract String generateId(IBook book);
+
+	// A derived ID replaces any ID the record already has
+	public boolean isDerived() {
+		return false;
+	}
+
+}
@@ -0,0 +1,10 @@
+package com.elasticsearch.service;
+
+/**
+ * Formats of an uploaded book catalog: NDJSON holds one JSON book record per line, CSV holds a header row
+ * naming the columns followed by one book record per row
+ */
+
+public enum ImportFormat {
+	NDJSON, CSV
+}
@@ -0,0 +1,82 @@
+package com.elasticsearch.service;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.elasticsearch.model.ImportResult;
+
+/**
+ * Progress of a running import. Counters are updated by the reading thread and by the bulk listeners, only the
+ * first maxErrors error messages are kept so a file full of bad records cannot exhaust the heap.
+ */
+
+class ImportReport {
+
+	private final long start = System.nanoTime();
+	private final int maxErrors;
+	private final AtomicLong read = new AtomicLong();
+	private final AtomicLong imported = new AtomicLong();
+	private final AtomicLong invalid = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final List<String> errors = new ArrayList<>();
+
+	ImportReport(int maxErrors) {
+		this.maxErrors = maxErrors;
+	}
+
+	long read() {
+		return read.incrementAndGet();
+	}
+
+	void imported() {
+		imported.incrementAndGet();
+	}
+
+	// A record which was rejected before it was sent to ES
+	void invalid(long line, String message) {
+		invalid.incrementAndGet();
+		addError("Line " + line + ": " + message);
+	}
+
+	// A record which ES did not store
+	void failed(String id, String message) {
+		failed.incrementAndGet();
+		addError("ID " + id + ": " + message);
+	}
+
+	long getRead() {
+		return read.get();
+	}
+
+	long getImported() {
+		return imported.get();
+	}
+
+	long getInvalid() {
+		return invalid.get();
+	}
+
+	long getFailed() {
+		return failed.get();
+	}
+
+	long getTookMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+	// Takes a snapshot of the counters and the kept errors
+	ImportResult toResult(boolean error, String message) {
+		synchronized (errors) {
+			return ImportResult.of(error, message, getRead(), getImported(), getInvalid(), getFailed(), getTookMillis(), new ArrayList<>(errors));
+		}
+	}
+
+	private void addError(String error) {
+		synchronized (errors) {
+			if (errors.size() < maxErrors)
+				errors.add(error);
+		}
+	}
+
+}
@@ -0,0 +1,10 @@
+package com.elasticsearch.service;
+
+/**
+ * Strategies for removing all book records: DELETE_BY_QUERY deletes the documents in place through
+ * sliced delete-by-query, TRUNCATE drops and recreates the whole index
+ */
+
+public enum PurgeMode {
+	DELETE_BY_QUERY, TRUNCATE
+}
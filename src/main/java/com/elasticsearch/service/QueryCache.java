@@ -0,0 +1,159 @@
+package com.elasticsearch.service;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.elasticsearch.action.search.SearchRequest;
+
+import com.elasticsearch.model.IBook;
+
+/**
+ * Bounded cache of whole query results keyed by the normalized search request. Every write bumps a generation
+ * counter which drops all results at once, and a result is only stored when no write happened since its query
+ * started, so a slow query can never cache a result from before a write. Writes of other instances are not seen,
+ * the max staleness bounds how long such a result is served. Results of queries which started shortly after a write
+ * are not cached either, as the write may not have been refreshed into them yet. The estimated size of all results
+ * is kept below a byte budget by evicting the least recently used ones.
+ */
+
+class QueryCache {
+
+	private static final long BOOK_OVERHEAD_BYTES = 96;
+	private static final long RESULT_OVERHEAD_BYTES = 256;
+
+	private final long maxBytes;
+	private final long maxStalenessNanos;
+	private final long settleNanos;
+	private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private final AtomicLong generation = new AtomicLong();
+	private volatile long invalidatedAt;
+	private long bytes;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+
+	QueryCache(long maxBytes, long maxStalenessMillis, long settleMillis) {
+		this.maxBytes = maxBytes;
+		this.maxStalenessNanos = TimeUnit.MILLISECONDS.toNanos(maxStalenessMillis);
+		this.settleNanos = TimeUnit.MILLISECONDS.toNanos(settleMillis);
+		this.invalidatedAt = System.nanoTime() - settleNanos;
+	}
+
+	// Normalizes a search request into a cache key, requests built the same way render the same JSON
+	static String key(SearchRequest searchRequest) {
+		return String.join(",", searchRequest.indices()) + "/" + String.join(",", searchRequest.types()) + "?scroll=" + (searchRequest.scroll() != null)
+				+ " " + searchRequest.source();
+	}
+
+	// Estimates the heap taken by the given records
+	static long weigh(Collection<IBook> books) {
+		long weight = RESULT_OVERHEAD_BYTES;
+		for (IBook book : books)
+			weight += BOOK_OVERHEAD_BYTES + 2L * (length(book.getId()) + length(book.getIsbn()) + length(book.getTitle()) + length(book.getAuthor()));
+		return weight;
+	}
+
+	static long weigh(int buckets) {
+		return RESULT_OVERHEAD_BYTES + BOOK_OVERHEAD_BYTES * buckets;
+	}
+
+	// Has to be taken before the query is sent, the result can only be stored with the ticket of its query
+	Ticket begin() {
+		return new Ticket(generation.get(), System.nanoTime());
+	}
+
+	// Returns the cached result, or null when it is absent or older than the max staleness
+	@SuppressWarnings("unchecked")
+	synchronized <T> T get(String key) {
+		Entry entry = entries.get(key);
+		if (entry != null && System.nanoTime() - entry.createdAt > maxStalenessNanos) {
+			remove(key);
+			entry = null;
+		}
+
+		if (entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+
+		hits.incrementAndGet();
+		return (T) entry.result;
+	}
+
+	synchronized void put(String key, Object result, long weight, Ticket ticket) {
+		if (weight > maxBytes || ticket.generation != generation.get() || ticket.startedAt - invalidatedAt < settleNanos)
+			return;
+
+		remove(key);
+		Iterator<Entry> eldest = entries.values().iterator();
+		while (bytes + weight > maxBytes && eldest.hasNext()) {
+			bytes -= eldest.next().weight;
+			eldest.remove();
+			evictions.incrementAndGet();
+		}
+
+		entries.put(key, new Entry(result, weight));
+		bytes += weight;
+	}
+
+	// Called on every write, drops all results and keeps queries which are still running from storing theirs
+	synchronized void invalidate() {
+		invalidatedAt = System.nanoTime();
+		generation.incrementAndGet();
+		invalidations.incrementAndGet();
+		entries.clear();
+		bytes = 0;
+	}
+
+	synchronized Map<String, Long> stats() {
+		Map<String, Long> stats = new LinkedHashMap<>();
+		stats.put("size", (long) entries.size());
+		stats.put("bytes", bytes);
+		stats.put("maxBytes", maxBytes);
+		stats.put("generation", generation.get());
+		stats.put("hits", hits.get());
+		stats.put("misses", misses.get());
+		stats.put("evictions", evictions.get());
+		stats.put("invalidations", invalidations.get());
+		return stats;
+	}
+
+	private void remove(String key) {
+		Entry entry = entries.remove(key);
+		if (entry != null)
+			bytes -= entry.weight;
+	}
+
+	private static int length(String value) {
+		return value == null ? 0 : value.length();
+	}
+
+	/** Generation and start time of a query **/
+
+	static class Ticket {
+
+		private final long generation;
+		private final long startedAt;
+
+		private Ticket(long generation, long startedAt) {
+			this.generation = generation;
+			this.startedAt = startedAt;
+		}
+	}
+
+	private static class Entry {
+
+		private final Object result;
+		private final long weight;
+		private final long createdAt = System.nanoTime();
+
+		private Entry(Object result, long weight) {
+			this.result = result;
+			this.weight = weight;
+		}
+	}
+
+}
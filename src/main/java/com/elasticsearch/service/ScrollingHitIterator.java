@@ -0,0 +1,109 @@
+package com.elasticsearch.service;
+
+import java.io.*;
+import java.util.*;
+
+import org.elasticsearch.action.search.*;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+import org.slf4j.*;
+
+import com.elasticsearch.metrics.*;
+import com.elasticsearch.resilience.ClientGuard;
+
+/**
+ * Walks every hit of a scrolling search request through the Scroll API, fetching one page at a time so only a
+ * single page of hits is held in memory. The scroll context is cleared once the hits are exhausted or
+ * the iterator is closed. As a batch reader it waits for a permit of the client guard rather than failing halfway.
+ */
+
+class ScrollingHitIterator implements Iterator<SearchHit>, Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(ScrollingHitIterator.class);
+
+	private final RestHighLevelClient restHighLevelClient;
+	private final BookServiceMetrics metrics;
+	private final ClientGuard clientGuard;
+	private final SearchRequest searchRequest;
+	private final TimeValue keepAlive;
+
+	private SearchHit[] hits = new SearchHit[0];
+	private int position;
+	private String scrollId;
+	private boolean exhausted;
+	private long totalHits = -1;
+
+	ScrollingHitIterator(RestHighLevelClient restHighLevelClient, BookServiceMetrics metrics, ClientGuard clientGuard, SearchRequest searchRequest,
+			TimeValue keepAlive) {
+		this.restHighLevelClient = restHighLevelClient;
+		this.metrics = metrics;
+		this.clientGuard = clientGuard;
+		this.searchRequest = searchRequest;
+		this.keepAlive = keepAlive;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (position < hits.length)
+			return true;
+		if (exhausted)
+			return false;
+
+		fetchNextPage();
+		return position < hits.length;
+	}
+
+	@Override
+	public SearchHit next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		return hits[position++];
+	}
+
+	// Number of hits the search matched, -1 until the first page has been fetched
+	long getTotalHits() {
+		return totalHits;
+	}
+
+	@Override
+	public void close() {
+		exhausted = true;
+		if (scrollId == null)
+			return;
+
+		ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+		clearScrollRequest.addScrollId(scrollId);
+		scrollId = null;
+		try {
+			restHighLevelClient.clearScroll(clearScrollRequest);
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+		}
+	}
+
+	// Requests the first page through search and every following page through the scroll ID
+	private void fetchNextPage() {
+		SearchResponse searchResponse;
+		try {
+			if (scrollId == null) {
+				searchResponse = metrics.measure(Operation.SEARCH, 0, clientGuard.wrapWaiting(Operation.SEARCH, () -> restHighLevelClient.search(searchRequest)));
+			} else {
+				SearchScrollRequest scrollRequest = new SearchScrollRequest(scrollId).scroll(keepAlive);
+				searchResponse = metrics.measure(Operation.SCROLL, 0, clientGuard.wrapWaiting(Operation.SCROLL, () -> restHighLevelClient.searchScroll(scrollRequest)));
+			}
+		} catch (IOException e) {
+			close();
+			throw new UncheckedIOException(e);
+		}
+
+		scrollId = searchResponse.getScrollId();
+		totalHits = searchResponse.getHits().getTotalHits();
+		hits = searchResponse.getHits().getHits();
+		position = 0;
+
+		if (hits.length == 0)
+			close();
+	}
+
+}
@@ -0,0 +1,39 @@
+package com.elasticsearch.service;
+
+import java.io.IOException;
+import java.util.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Turns the sort values of the last hit of a page into the opaque cursor of the next page and back. The cursor is
+ * the URL safe Base64 of the values as a JSON array, so it can be passed around as a query parameter as it is.
+ */
+
+final class SearchCursor {
+
+	private SearchCursor() {
+	}
+
+	static String encode(ObjectMapper objectMapper, Object[] sortValues) {
+		try {
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(sortValues));
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Sort values cannot be written: " + e.getMessage(), e);
+		}
+	}
+
+	// A cursor of a search sorted on other fields has a different number of values and is rejected
+	static Object[] decode(ObjectMapper objectMapper, String cursor, int sortFields) {
+		Object[] sortValues;
+		try {
+			sortValues = objectMapper.readValue(Base64.getUrlDecoder().decode(cursor), Object[].class);
+		} catch (IOException | IllegalArgumentException e) {
+			throw new IllegalArgumentException("Cursor is malformed.", e);
+		}
+		if (sortValues == null || sortValues.length != sortFields || Arrays.asList(sortValues).contains(null))
+			throw new IllegalArgumentException("Cursor does not belong to this sort order.");
+		return sortValues;
+	}
+
+}
@@ -0,0 +1,25 @@
+package com.elasticsearch.service;
+
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+
+/**
+ * When a write becomes visible to searches: NONE leaves it to the periodic index refresh, WAIT_UNTIL
+ * returns once a refresh has made it visible and IMMEDIATE forces a refresh of the affected shards.
+ * Reads by ID are real-time and see every acknowledged write regardless of this setting.
+ */
+
+public enum WriteConsistency {
+
+	NONE(RefreshPolicy.NONE), WAIT_UNTIL(RefreshPolicy.WAIT_UNTIL), IMMEDIATE(RefreshPolicy.IMMEDIATE);
+
+	private final RefreshPolicy refreshPolicy;
+
+	WriteConsistency(RefreshPolicy refreshPolicy) {
+		this.refreshPolicy = refreshPolicy;
+	}
+
+	public RefreshPolicy getRefreshPolicy() {
+		return refreshPolicy;
+	}
+
+}
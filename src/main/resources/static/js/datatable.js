@@ -1,7 +1,8 @@
 $(document).ready( function () {
 	 var table = $('#booksTable').DataTable({
-			"sAjaxSource": "/books/get/all",
-			"sAjaxDataProp": "",
+			"serverSide": true,
+			"ajax": "/books/get/page",
+			"rowId": "id",
 			"order": [[ 0, "asc" ]],
 			"aoColumns": [
 			      { "data": "id", "render": function (data, type, full, meta) { return '<a href="/books/updateBook?id='+data +'">' + data + '</a>'; }},
@@ -11,7 +12,27 @@ $(document).ready( function () {
 				  { "data": "price"}
 			]
 	 })
-	 
-});
 
+	 // Changes which may move records in or out of the page only reload the current page, at most every half second
+	 var reloadTimer = null;
+	 function reloadPage() {
+		 if (reloadTimer === null)
+			 reloadTimer = setTimeout(function () { reloadTimer = null; table.ajax.reload(null, false); }, 500);
+	 }
+
+	 // Applies the change feed: shown records are updated in place, the browser resumes the feed after reconnecting
+	 if (window.EventSource) {
+		 var events = new EventSource('/books/events');
+		 events.onmessage = function (message) {
+			 var event = JSON.parse(message.data);
+			 var row = event.bookId ? table.row('#' + $.escapeSelector(event.bookId)) : null;
+			 var shown = row !== null && row.any();
 
+			 if (event.type === 'UPDATED' && event.book && shown)
+				 row.data(event.book);
+			 else if (event.type === 'ADDED' || event.type === 'RELOAD' || shown)
+				 reloadPage();
+		 };
+	 }
+	 
+});
@@ -2,7 +2,11 @@ package com.elasticsearch;
 
 import static org.junit.Assert.assertEquals;
 
-import java.util.List;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.stream.Stream;
 
 import org.junit.*;
 import org.junit.runner.RunWith;
@@ -11,15 +15,14 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import com.elasticsearch.model.*;
-import com.elasticsearch.service.IBookService;
+import com.elasticsearch.service.*;
 
 @RunWith(SpringRunner.class)
-@SpringBootTest(classes = ElasticsearchDemoApplication.class)
+@SpringBootTest(classes = ElasticsearchDemoApplication.class, properties = "elasticsearch.seed.enabled=false")
 
 /**
- * Note: While executing CRUD operations in test cases, the updated states of the book records are
- * not being retrieved instantaneously through Rest High Level Client That's why a delay has been
- * added between transactions to get the correct and updated states
+ * Note: Writes in these test cases wait for a refresh so the following searches see them, reads by ID
+ * are real-time and need no wait at all
  */
 
 public class BookServiceTest {
@@ -27,6 +30,9 @@ public class BookServiceTest {
 	@Autowired
 	IBookService bookService;
 
+	@Autowired
+	BookExporter bookExporter;
+
 	@Before
 	public void emptyData() {
 		bookService.deleteAll();
@@ -35,35 +41,113 @@ public class BookServiceTest {
 	@Test
 	public void testaddBookRecord() {
 
-		delay(1000);
 		IBook book = Book.of("12345789", "testTitle1", "testAuthor1", 100);
 		// Add first time to test if the record gets added successfully
-		bookService.addBookRecord(book);
-		delay(1000);
+		bookService.addBookRecord(book, WriteConsistency.WAIT_UNTIL);
 		IBook testBook = bookService.getBookRecord(book.getId());
 		assertEquals(testBook.getIsbn(), book.getIsbn());
 		assertEquals(testBook.getTitle(), book.getTitle());
 		assertEquals(testBook.getAuthor(), book.getAuthor());
 		// Next time it should not add as the record already exists
-		IResultData result = bookService.addBookRecord(testBook);
-		delay(1000);
+		IResultData result = bookService.addBookRecord(testBook, WriteConsistency.WAIT_UNTIL);
+		assertEquals(result.hasError(), true);
+
+		bookService.deleteAll();
+	}
+
+	@Test
+	public void testaddBookRecordMatchingTitle() {
+
+		IBook book = Book.of("12345788", "testTitle1", "testAuthor1", 100);
+		bookService.addBookRecord(book, WriteConsistency.WAIT_UNTIL);
+		// A title differing only in case and spacing still counts as the same book
+		IResultData result = bookService.addBookRecord(Book.of("12345789", " TESTTITLE1 ", "testAuthor2", 100), WriteConsistency.WAIT_UNTIL);
 		assertEquals(result.hasError(), true);
+		assertEquals(bookService.getBookRecords().size(), 1);
 
 		bookService.deleteAll();
 	}
 
+	@Test
+	public void testaddBookRecords() {
+
+		// Add three valid book records and one with an empty title in a single bulk
+		IBook book1 = Book.of("12345781", "testTitle1", "testAuthor1", 100);
+		IBook book2 = Book.of("12345782", "testTitle2", "testAuthor2", 100);
+		IBook book3 = Book.of("12345783", "testTitle3", "testAuthor3", 100);
+		IBook book4 = Book.of("12345784", "", "testAuthor4", 100);
+
+		List<IResultData> results = bookService.addBookRecords(Stream.of(book1, book2, book3, book4), WriteConsistency.WAIT_UNTIL);
+		assertEquals(results.size(), 4);
+		assertEquals(results.stream().filter(IResultData::hasError).count(), 1);
+
+		assertEquals(bookService.getBookRecords().size(), 3);
+
+		bookService.deleteAll();
+	}
+
+	@Test
+	public void testImportBookRecords() {
+
+		// Two valid rows, one with an empty author and one with an invalid price
+		String catalog = "isbn,title,author,price\n12345791,testTitle1,testAuthor1,100\n12345792,testTitle2,,100\n12345793,testTitle3,testAuthor3,abc\n"
+				+ "12345794,\"testTitle4, second edition\",testAuthor4,100\n";
+		ImportResult result = bookService.importBookRecords(new ByteArrayInputStream(catalog.getBytes(StandardCharsets.UTF_8)), ImportFormat.CSV);
+		assertEquals(result.getRead(), 4);
+		assertEquals(result.getImported(), 2);
+		assertEquals(result.getInvalid(), 2);
+		assertEquals(result.getErrors().size(), 2);
+
+		assertEquals(bookService.getBookRecords().size(), 2);
+
+		bookService.deleteAll();
+	}
+
+	@Test
+	public void testExportBookRecords() throws IOException {
+
+		IBook book1 = Book.of("12345795", "testTitle1", "testAuthor1", 100);
+		IBook book2 = Book.of("12345796", "testTitle2", "testAuthor2", 100);
+		IBook book3 = Book.of("12345797", "testTitle3", "testAuthor3", 100);
+		bookService.addBookRecords(Stream.of(book1, book2, book3), WriteConsistency.WAIT_UNTIL);
+
+		// Every record is exported exactly once however the index is sliced
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ExportResult result = bookExporter.export(output, 2);
+		assertEquals(result.hasError(), false);
+		assertEquals(result.getExported(), 3);
+
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(output.toByteArray())),
+				StandardCharsets.UTF_8))) {
+			assertEquals(reader.lines().count(), 3);
+		}
+
+		bookService.deleteAll();
+	}
+
+	@Test
+	public void testaddBookRecordAsync() {
+
+		IBook book = Book.of("12345790", "testTitle5", "testAuthor5", 100);
+		// Add and retrieve the record through the non-blocking variants
+		IResultData result = bookService.addBookRecordAsync(book, WriteConsistency.WAIT_UNTIL).join();
+		assertEquals(result.hasError(), false);
+		IBook testBook = bookService.getBookRecordAsync(book.getId()).join();
+		assertEquals(testBook.getIsbn(), book.getIsbn());
+		assertEquals(testBook.getTitle(), book.getTitle());
+
+		bookService.deleteBookRecordAsync(book.getId()).join();
+	}
+
 	@Test
 	public void testDeleteBookRecord() {
 
-		delay(1000);
 		// Create and add a book record
 		IBook book = Book.of("12345755", "testTitle4", "testAuthor4", 100);
-		bookService.addBookRecord(book);
-		delay(1000);
+		bookService.addBookRecord(book, WriteConsistency.WAIT_UNTIL);
 		assertEquals(bookService.getBookRecords().size(), 1);
 		// Delete the book record
-		bookService.deleteBookRecord(book.getId());
-		delay(1000);
+		bookService.deleteBookRecord(book.getId(), WriteConsistency.WAIT_UNTIL);
 		// Check if the book record has been deleted
 		assertEquals(bookService.getBookRecords().size(), 0);
 	}
@@ -71,17 +155,15 @@ public class BookServiceTest {
 	@Test
 	public void testgetBookRecords() {
 
-		delay(1000);
 		// Create and add three book records
 		IBook book1 = Book.of("12345787", "testTitle1", "testAuthor1", 100);
 		IBook book2 = Book.of("12345788", "testTitle2", "testAuthor2", 100);
 		IBook book3 = Book.of("12345789", "testTitle3", "testAuthor3", 100);
 
-		bookService.addBookRecord(book1);
-		bookService.addBookRecord(book2);
-		bookService.addBookRecord(book3);
+		bookService.addBookRecord(book1, WriteConsistency.WAIT_UNTIL);
+		bookService.addBookRecord(book2, WriteConsistency.WAIT_UNTIL);
+		bookService.addBookRecord(book3, WriteConsistency.WAIT_UNTIL);
 
-		delay(2000);
 		// Check if all three records have been stored and retrieved from the ES
 		List<IBook> books = bookService.getBookRecords();
 		assertEquals(books.size(), 3);
@@ -92,20 +174,17 @@ public class BookServiceTest {
 	@Test
 	public void testUpdateBookRecord() {
 
-		delay(1000);
 		// Create and add a book record
 		IBook book = Book.of("12345755", "testTitle4", "testAuthor4", 100);
-		bookService.addBookRecord(book);
+		bookService.addBookRecord(book, WriteConsistency.WAIT_UNTIL);
 
-		delay(1000);
 		// Update the book record
 		book.setIsbn(book.getIsbn() + "00");
 		book.setTitle(book.getTitle() + " updated");
 		book.setAuthor(book.getAuthor() + "updated");
 
-		bookService.updateBookRecord(book);
+		bookService.updateBookRecord(book, WriteConsistency.WAIT_UNTIL);
 
-		delay(1000);
 		// Retrieve the book record to check if it has been updated
 		IBook testBook = bookService.getBookRecord(book.getId());
 
@@ -116,12 +195,62 @@ public class BookServiceTest {
 		bookService.deleteBookRecord(testBook.getId());
 	}
 
-	private void delay(int milliseconds) {
-		try {
-			Thread.sleep(milliseconds);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
+	@Test
+	public void testPatchBookRecord() {
+
+		// Create and add a book record
+		IBook book = Book.of("12345756", "testTitle6", "testAuthor6", 100);
+		bookService.addBookRecord(book, WriteConsistency.WAIT_UNTIL);
+
+		// Patch the price only and check that the other fields are kept
+		UpdateResult result = (UpdateResult) bookService.patchBookRecord(book.getId(), Collections.singletonMap("price", 120), null);
+		assertEquals(result.hasError(), false);
+		IBook testBook = bookService.getBookRecord(book.getId());
+		assertEquals(testBook.getPrice(), 120, 0);
+		assertEquals(testBook.getTitle(), book.getTitle());
+
+		// A patch against an outdated version is reported as a conflict
+		UpdateResult conflict = (UpdateResult) bookService.patchBookRecord(book.getId(), Collections.singletonMap("price", 130), result.getVersion() - 1);
+		assertEquals(conflict.isConflict(), true);
+		UpdateResult current = (UpdateResult) bookService.patchBookRecord(book.getId(), Collections.singletonMap("price", 130), result.getVersion());
+		assertEquals(current.hasError(), false);
+
+		bookService.deleteBookRecord(book.getId());
+	}
+
+	@Test
+	public void testSearch() {
+
+		bookService.addBookRecord(Book.of("12345761", "The Hobbit", "Tolkien", 15), WriteConsistency.WAIT_UNTIL);
+		bookService.addBookRecord(Book.of("12345762", "The Silmarillion", "Tolkien", 25), WriteConsistency.WAIT_UNTIL);
+		bookService.addBookRecord(Book.of("12345763", "The Road", "McCarthy", 12), WriteConsistency.WAIT_UNTIL);
+
+		// Words are matched across title and author, the price range only filters
+		BookQuery query = new BookQuery();
+		query.setText("tolkien hobbit");
+		assertEquals(bookService.search(query).getBooks().size(), 1);
+		query.setText("the");
+		query.setMaxPrice(20.0);
+		assertEquals(bookService.search(query).getTotal(), 2);
+
+		// Pages follow each other through the cursor until the last one has none
+		query = new BookQuery();
+		query.setAuthor("Tolkien");
+		query.setSort("price");
+		query.setSize(1);
+		query.setTrackTotalHits(false);
+		SearchResult first = bookService.search(query);
+		assertEquals(first.getBooks().get(0).getIsbn(), "12345761");
+		assertEquals(first.getTotal(), -1);
+		query.setCursor(first.getCursor());
+		SearchResult second = bookService.search(query);
+		assertEquals(second.getBooks().get(0).getIsbn(), "12345762");
+		assertEquals(second.getCursor(), null);
+
+		query.setCursor("not a cursor");
+		assertEquals(bookService.search(query).hasError(), true);
+
+		bookService.deleteAll();
 	}
 
 }
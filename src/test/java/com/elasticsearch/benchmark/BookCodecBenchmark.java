@@ -0,0 +1,73 @@
+package com.elasticsearch.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.common.bytes.*;
+import org.elasticsearch.common.xcontent.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.*;
+
+import com.elasticsearch.model.*;
+import com.elasticsearch.service.BookCodec;
+import com.fasterxml.jackson.databind.*;
+
+/**
+ * Compares the Map round trip previously used to read and write Book Records with the direct byte
+ * level codec. Run the main method, the GC profiler reports the allocation per operation.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookCodecBenchmark {
+
+	private ObjectMapper objectMapper;
+	private BookCodec bookCodec;
+	private IBook book;
+	private BytesReference source;
+
+	@Setup
+	public void setup() throws Exception {
+		objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+		bookCodec = new BookCodec(objectMapper);
+		book = Book.of("9780735253308", "The Handmaid's Tale", "Margaret Atwood", 36);
+		source = new BytesArray(objectMapper.writeValueAsBytes(book));
+	}
+
+	// What getSourceAsMap followed by convertValue did for every hit
+	@Benchmark
+	public IBook readThroughMap() {
+		Map<String, Object> sourceAsMap = XContentHelper.convertToMap(source, false, XContentType.JSON).v2();
+		return objectMapper.convertValue(sourceAsMap, Book.class);
+	}
+
+	@Benchmark
+	public IBook readThroughCodec() {
+		return bookCodec.read(source);
+	}
+
+	// What convertValue followed by IndexRequest.source(Map) did for every add
+	@Benchmark
+	public IndexRequest writeThroughMap() {
+		Map<?, ?> dataMap = objectMapper.convertValue(book, Map.class);
+		return new IndexRequest("bookdata", "books", book.getId()).source(dataMap);
+	}
+
+	@Benchmark
+	public IndexRequest writeThroughCodec() {
+		return new IndexRequest("bookdata", "books", book.getId()).source(bookCodec.write(book), XContentType.JSON);
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder().include(BookCodecBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,126 @@
+package com.elasticsearch.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.elasticsearch.ElasticsearchDemoApplication;
+import com.elasticsearch.model.*;
+import com.elasticsearch.service.*;
+
+/**
+ * End to end throughput of the book service hot paths: the full application context runs against an
+ * in-process ES stand-in, so every operation pays for request building, HTTP, response parsing and
+ * mapping but not for a real cluster. The record and query caches are disabled so reads always reach the stand-in.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookServiceBenchmark {
+
+	private static final int RECORDS = 1000;
+
+	private ElasticsearchStandIn standIn;
+	private ConfigurableApplicationContext context;
+	private IBookService bookService;
+	private List<IBook> records;
+	private byte[] catalog;
+	private final AtomicLong sequence = new AtomicLong();
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		standIn = new ElasticsearchStandIn();
+		context = new SpringApplicationBuilder(ElasticsearchDemoApplication.class).web(false)
+				.run("--elasticsearch.client.hosts=" + standIn.getHost(), "--elasticsearch.cache.max-entries=0", "--elasticsearch.query-cache.max-bytes=0",
+						"--elasticsearch.seed.enabled=false", "--logging.level.root=WARN");
+		bookService = context.getBean(IBookService.class);
+
+		records = IntStream.range(0, RECORDS).mapToObj(i -> Book.of("seed-isbn-" + i, "seed title " + i, "seed author", i)).collect(Collectors.toList());
+		bookService.addBookRecords(records.stream());
+
+		catalog = IntStream.range(0, 100).mapToObj(i -> "import-isbn-" + i + ",import title " + i + ",import author," + i)
+				.collect(Collectors.joining("\n", "isbn,title,author,price\n", "\n")).getBytes(StandardCharsets.UTF_8);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+		standIn.close();
+	}
+
+	@Benchmark
+	public IResultData addBookRecord() {
+		long n = sequence.incrementAndGet();
+		return bookService.addBookRecord(Book.of("isbn-" + n, "title " + n, "author", 10));
+	}
+
+	@Benchmark
+	public IBook getBookRecord() {
+		return bookService.getBookRecord(nextRecord().getId());
+	}
+
+	@Benchmark
+	public List<IBook> getBookRecords() {
+		return bookService.getBookRecords();
+	}
+
+	// Fifty IDs with only id and title in a single multi get, against fifty separate gets of whole records
+	@Benchmark
+	public List<IBook> getBookRecordsBatch() {
+		return bookService.getBookRecords(nextIds(50), "id", "title");
+	}
+
+	@Benchmark
+	public List<IBook> getBookRecordEach() {
+		return nextIds(50).stream().map(bookService::getBookRecord).collect(Collectors.toList());
+	}
+
+	@Benchmark
+	public IResultData updateBookRecord() {
+		IBook record = nextRecord();
+		Book book = new Book(record.getIsbn(), record.getTitle(), record.getAuthor(), sequence.incrementAndGet());
+		book.setId(record.getId());
+		return bookService.updateBookRecord(book);
+	}
+
+	// Adding a book whose ISBN is already stored always goes through the duplicate check and is rejected
+	@Benchmark
+	public IResultData duplicateCheck() {
+		IBook record = nextRecord();
+		return bookService.addBookRecord(Book.of(record.getIsbn(), record.getTitle(), record.getAuthor(), record.getPrice()));
+	}
+
+	// Parses and bulk imports a catalog of a hundred CSV rows
+	@Benchmark
+	public ImportResult importBookRecords() {
+		return bookService.importBookRecords(new ByteArrayInputStream(catalog), ImportFormat.CSV);
+	}
+
+	private List<String> nextIds(int count) {
+		return IntStream.range(0, count).mapToObj(i -> nextRecord().getId()).collect(Collectors.toList());
+	}
+
+	private IBook nextRecord() {
+		return records.get(ThreadLocalRandom.current().nextInt(RECORDS));
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder().include(BookServiceBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.elasticsearch.benchmark;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.elasticsearch.ElasticsearchDemoApplication;
+import com.elasticsearch.model.*;
+import com.elasticsearch.service.*;
+
+/**
+ * Bulk indexing throughput of new records under each ID strategy, run against the ES stand-in like the book service
+ * benchmark. The stand-in keeps documents sorted by ID, which only hints at how a real index favours time ordered
+ * IDs, measure against a cluster for the segment level effect.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BulkIndexingBenchmark {
+
+	private static final int BATCH = 100;
+
+	@Param({ "FLAKE", "ISBN" })
+	private IdStrategy idStrategy;
+
+	private ElasticsearchStandIn standIn;
+	private ConfigurableApplicationContext context;
+	private IBookService bookService;
+	private final AtomicLong sequence = new AtomicLong();
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		standIn = new ElasticsearchStandIn();
+		context = new SpringApplicationBuilder(ElasticsearchDemoApplication.class).web(false)
+				.run("--elasticsearch.client.hosts=" + standIn.getHost(), "--elasticsearch.id.strategy=" + idStrategy, "--elasticsearch.cache.max-entries=0",
+						"--elasticsearch.query-cache.max-bytes=0", "--elasticsearch.seed.enabled=false", "--logging.level.root=WARN");
+		bookService = context.getBean(IBookService.class);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+		standIn.close();
+	}
+
+	// Every batch holds new ISBNs, so no record is rejected as a duplicate under either strategy
+	@Benchmark
+	public List<IResultData> addBookRecords() {
+		long first = sequence.getAndAdd(BATCH);
+		return bookService.addBookRecords(LongStream.range(first, first + BATCH).mapToObj(n -> Book.of("978-" + n, "title " + n, "author", 10)));
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder().include(BulkIndexingBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,413 @@
+package com.elasticsearch.benchmark;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.node.*;
+import com.sun.net.httpserver.*;
+
+/**
+ * In-process HTTP server speaking just enough of the ES 6 REST API for the book service: document
+ * create, get, multi get, update and delete, bulk, search with ISBN and title term filters, scroll,
+ * delete-by-query and a single index behind its aliases. Documents live in memory and an artificial
+ * delay can be injected into every response. It is a stand-in for measuring the client side cost of
+ * the service, not a model of ES performance.
+ */
+
+public class ElasticsearchStandIn implements Closeable {
+
+	private static final String JSON = "application/json; charset=UTF-8";
+	private static final String INDEX = "bookdata_v2";
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final Map<String, Document> documents = new ConcurrentSkipListMap<>();
+	private final Map<String, Scroll> scrolls = new ConcurrentHashMap<>();
+	private final AtomicLong scrollIds = new AtomicLong();
+	private final AtomicLong seqNo = new AtomicLong();
+	private final AtomicLong requests = new AtomicLong();
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	private volatile long delayMillis;
+
+	static {
+		// Without TCP_NODELAY the separately flushed headers and body hit the 40ms delayed ACK on every response
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	public ElasticsearchStandIn() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2);
+		server.setExecutor(executor);
+		server.createContext("/", this::handle);
+		server.start();
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	public String getHost() {
+		return "http://127.0.0.1:" + getPort();
+	}
+
+	public void setDelayMillis(long delayMillis) {
+		this.delayMillis = delayMillis;
+	}
+
+	public long getRequestCount() {
+		return requests.get();
+	}
+
+	public int size() {
+		return documents.size();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+		try {
+			if (delayMillis > 0)
+				Thread.sleep(delayMillis);
+
+			byte[] body = readBody(exchange);
+			Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+			List<String> path = Arrays.stream(exchange.getRequestURI().getPath().split("/")).filter(s -> !s.isEmpty()).collect(Collectors.toList());
+			route(exchange, exchange.getRequestMethod(), path, params, body);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			respond(exchange, 503, error("interrupted", "stand-in stopped"));
+		} catch (RuntimeException e) {
+			respond(exchange, 500, error("exception", String.valueOf(e.getMessage())));
+		}
+	}
+
+	private void route(HttpExchange exchange, String method, List<String> path, Map<String, String> params, byte[] body) throws IOException {
+		String last = path.isEmpty() ? "" : path.get(path.size() - 1);
+
+		if (path.isEmpty()) {
+			respond(exchange, 200, info());
+		} else if ("_bulk".equals(last)) {
+			respond(exchange, 200, bulk(body));
+		} else if (path.size() == 2 && "_search".equals(path.get(0)) && "scroll".equals(path.get(1))) {
+			if ("DELETE".equals(method))
+				respond(exchange, 200, clearScroll(body));
+			else
+				respond(exchange, 200, scroll(body));
+		} else if ("_search".equals(last)) {
+			respond(exchange, 200, search(path.get(0), body, params));
+		} else if ("_alias".equals(path.get(0))) {
+			ObjectNode response = objectMapper.createObjectNode();
+			response.putObject(INDEX).putObject("aliases").putObject(last);
+			respond(exchange, 200, response);
+		} else if ("_aliases".equals(last) || "_reindex".equals(last)) {
+			respond(exchange, 200, objectMapper.createObjectNode().put("acknowledged", true).put("created", 0).put("updated", 0));
+		} else if ("_mget".equals(last)) {
+			respond(exchange, 200, multiGet(body));
+		} else if ("_count".equals(last)) {
+			respond(exchange, 200, objectMapper.createObjectNode().put("count", documents.size()));
+		} else if ("_refresh".equals(last)) {
+			respond(exchange, 200, objectMapper.createObjectNode().put("acknowledged", true));
+		} else if ("_delete_by_query".equals(last)) {
+			int deleted = documents.size();
+			documents.clear();
+			ObjectNode response = objectMapper.createObjectNode().put("took", 1).put("timed_out", false).put("total", deleted).put("deleted", deleted);
+			response.putArray("failures");
+			respond(exchange, 200, response);
+		} else if (path.size() == 4 && "_create".equals(last)) {
+			create(exchange, path, body);
+		} else if (path.size() == 4 && "_update".equals(last)) {
+			update(exchange, path, body);
+		} else if (path.size() == 3) {
+			document(exchange, method, path, body);
+		} else if (path.size() == 1) {
+			if ("DELETE".equals(method))
+				documents.clear();
+			respond(exchange, 200, objectMapper.createObjectNode().put("acknowledged", true));
+		} else {
+			respond(exchange, 400, error("illegal_argument_exception", "unsupported " + method + " " + path));
+		}
+	}
+
+	private void create(HttpExchange exchange, List<String> path, byte[] body) throws IOException {
+		Document document = new Document(path.get(0), path.get(1), path.get(2), (ObjectNode) objectMapper.readTree(body), 1);
+		if (documents.putIfAbsent(document.id, document) != null) {
+			respond(exchange, 409, error("version_conflict_engine_exception", "[" + document.type + "][" + document.id + "]: version conflict, document already exists"));
+			return;
+		}
+		respond(exchange, 201, writeResult(document, "created"));
+	}
+
+	private void update(HttpExchange exchange, List<String> path, byte[] body) throws IOException {
+		Document current = documents.get(path.get(2));
+		if (current == null) {
+			respond(exchange, 404, error("document_missing_exception", "[" + path.get(1) + "][" + path.get(2) + "]: document missing"));
+			return;
+		}
+
+		ObjectNode source = current.source.deepCopy();
+		JsonNode doc = objectMapper.readTree(body).path("doc");
+		if (doc.isObject())
+			source.setAll((ObjectNode) doc);
+		Document updated = new Document(current.index, current.type, current.id, source, current.version + 1);
+		documents.put(updated.id, updated);
+		respond(exchange, 200, writeResult(updated, source.equals(current.source) ? "noop" : "updated"));
+	}
+
+	private void document(HttpExchange exchange, String method, List<String> path, byte[] body) throws IOException {
+		String id = path.get(2);
+		if ("GET".equals(method)) {
+			Document document = documents.get(id);
+			ObjectNode response = objectMapper.createObjectNode().put("_index", path.get(0)).put("_type", path.get(1)).put("_id", id);
+			if (document == null) {
+				respond(exchange, 404, response.put("found", false));
+				return;
+			}
+			response.put("_version", document.version).put("found", true).set("_source", document.source);
+			respond(exchange, 200, response);
+		} else if ("DELETE".equals(method)) {
+			Document document = documents.remove(id);
+			if (document == null) {
+				respond(exchange, 404, writeResult(new Document(path.get(0), path.get(1), id, null, 1), "not_found"));
+				return;
+			}
+			respond(exchange, 200, writeResult(new Document(document.index, document.type, id, null, document.version + 1), "deleted"));
+		} else {
+			Document current = documents.get(id);
+			Document document = new Document(path.get(0), path.get(1), id, (ObjectNode) objectMapper.readTree(body), current == null ? 1 : current.version + 1);
+			documents.put(id, document);
+			respond(exchange, current == null ? 201 : 200, writeResult(document, current == null ? "created" : "updated"));
+		}
+	}
+
+	// Answers every doc of a multi get, honouring _source includes
+	private ObjectNode multiGet(byte[] body) throws IOException {
+		ObjectNode response = objectMapper.createObjectNode();
+		ArrayNode docs = response.putArray("docs");
+		for (JsonNode item : objectMapper.readTree(body).path("docs")) {
+			String id = item.path("_id").asText();
+			Document document = documents.get(id);
+			ObjectNode doc = docs.addObject().put("_index", item.path("_index").asText()).put("_type", item.path("_type").asText()).put("_id", id);
+			if (document == null) {
+				doc.put("found", false);
+				continue;
+			}
+
+			ObjectNode source = document.source;
+			JsonNode includes = item.path("_source").path("includes");
+			if (includes.size() > 0) {
+				source = objectMapper.createObjectNode();
+				for (JsonNode field : includes)
+					if (document.source.has(field.asText()))
+						source.set(field.asText(), document.source.get(field.asText()));
+			}
+			doc.put("_version", document.version).put("found", true).set("_source", source);
+		}
+		return response;
+	}
+
+	private ObjectNode bulk(byte[] body) throws IOException {
+		ArrayNode items = objectMapper.createArrayNode();
+		boolean errors = false;
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (line.isEmpty())
+				continue;
+			JsonNode action = objectMapper.readTree(line);
+			String opType = action.fieldNames().next();
+			JsonNode metadata = action.get(opType);
+			String id = metadata.path("_id").asText();
+			String index = metadata.path("_index").asText();
+			String type = metadata.path("_type").asText();
+
+			ObjectNode item;
+			if ("delete".equals(opType)) {
+				Document removed = documents.remove(id);
+				item = writeResult(new Document(index, type, id, null, removed == null ? 1 : removed.version + 1), removed == null ? "not_found" : "deleted");
+				item.put("status", removed == null ? 404 : 200);
+			} else {
+				Document document = new Document(index, type, id, (ObjectNode) objectMapper.readTree(reader.readLine()), 1);
+				if ("create".equals(opType) && documents.putIfAbsent(id, document) != null) {
+					errors = true;
+					item = objectMapper.createObjectNode().put("_index", index).put("_type", type).put("_id", id).put("status", 409);
+					item.set("error", error("version_conflict_engine_exception", "document already exists").get("error"));
+				} else {
+					documents.put(id, document);
+					item = writeResult(document, "created").put("status", 201);
+				}
+			}
+			items.addObject().set(opType, item);
+		}
+
+		ObjectNode response = objectMapper.createObjectNode().put("took", 1).put("errors", errors);
+		response.set("items", items);
+		return response;
+	}
+
+	// Applies the term filters on isbn and title.keyword found anywhere in the query and a slice by ID hash, ignores everything else
+	private ObjectNode search(String index, byte[] body, Map<String, String> params) throws IOException {
+		JsonNode request = body.length == 0 ? objectMapper.createObjectNode() : objectMapper.readTree(body);
+		Set<String> isbns = termValues(request, "isbn");
+		Set<String> titles = termValues(request, "title.keyword");
+		int size = request.path("size").asInt(10);
+		int from = Math.max(0, request.path("from").asInt(0));
+
+		int sliceId = request.path("slice").path("id").asInt(0);
+		int sliceMax = request.path("slice").path("max").asInt(1);
+
+		List<Document> matches = documents.values().stream().filter(document -> isbns.isEmpty() && titles.isEmpty()
+				|| isbns.contains(document.source.path("isbn").asText()) || titles.contains(document.source.path("title").asText()))
+				.filter(document -> Math.floorMod(document.id.hashCode(), sliceMax) == sliceId).collect(Collectors.toList());
+
+		int end = Math.min(matches.size(), from + size);
+		List<Document> page = from >= end ? Collections.emptyList() : matches.subList(from, end);
+		ObjectNode response = searchResponse(page, matches.size());
+
+		if (params.containsKey("scroll")) {
+			String scrollId = "scroll-" + scrollIds.incrementAndGet();
+			scrolls.put(scrollId, new Scroll(size, matches.subList(end, matches.size())));
+			response.put("_scroll_id", scrollId);
+		}
+		return response;
+	}
+
+	private ObjectNode scroll(byte[] body) throws IOException {
+		String scrollId = objectMapper.readTree(body).path("scroll_id").asText();
+		Scroll scroll = scrolls.get(scrollId);
+		List<Document> page = scroll == null ? Collections.emptyList() : scroll.nextPage();
+		return searchResponse(page, page.size()).put("_scroll_id", scrollId);
+	}
+
+	private ObjectNode clearScroll(byte[] body) throws IOException {
+		int freed = 0;
+		for (JsonNode scrollId : objectMapper.readTree(body).path("scroll_id"))
+			freed += scrolls.remove(scrollId.asText()) == null ? 0 : 1;
+		return objectMapper.createObjectNode().put("succeeded", true).put("num_freed", freed);
+	}
+
+	private ObjectNode searchResponse(List<Document> page, long total) {
+		ObjectNode response = objectMapper.createObjectNode().put("took", 1).put("timed_out", false);
+		response.putObject("_shards").put("total", 1).put("successful", 1).put("skipped", 0).put("failed", 0);
+		ObjectNode hits = response.putObject("hits").put("total", total).put("max_score", 0.0);
+		ArrayNode hitArray = hits.putArray("hits");
+		for (Document document : page) {
+			ObjectNode hit = hitArray.addObject().put("_index", document.index).put("_type", document.type).put("_id", document.id).put("_score", 0.0);
+			hit.set("_source", document.source);
+			hit.putArray("sort").add(document.id);
+		}
+		return response;
+	}
+
+	private Set<String> termValues(JsonNode request, String field) {
+		Set<String> values = new HashSet<>();
+		for (JsonNode term : request.findValues("term")) {
+			JsonNode value = term.path(field);
+			if (!value.isMissingNode())
+				values.add(value.isObject() ? value.path("value").asText() : value.asText());
+		}
+		return values;
+	}
+
+	private ObjectNode writeResult(Document document, String result) {
+		ObjectNode response = objectMapper.createObjectNode().put("_index", document.index).put("_type", document.type).put("_id", document.id)
+				.put("_version", document.version).put("result", result);
+		response.putObject("_shards").put("total", 1).put("successful", 1).put("failed", 0);
+		return response.put("_seq_no", seqNo.incrementAndGet()).put("_primary_term", 1);
+	}
+
+	private ObjectNode info() {
+		ObjectNode info = objectMapper.createObjectNode().put("name", "stand-in").put("cluster_name", "elasticsearch").put("cluster_uuid", "stand-in");
+		info.putObject("version").put("number", "6.1.2").put("build_hash", "stand-in").put("build_date", "2018-01-10T02:35:59.208Z")
+				.put("build_snapshot", false).put("lucene_version", "7.1.0").put("minimum_wire_compatibility_version", "5.6.0")
+				.put("minimum_index_compatibility_version", "5.0.0");
+		return info.put("tagline", "You Know, for Search");
+	}
+
+	private ObjectNode error(String type, String reason) {
+		ObjectNode response = objectMapper.createObjectNode();
+		response.putObject("error").put("type", type).put("reason", reason);
+		return response;
+	}
+
+	private void respond(HttpExchange exchange, int status, ObjectNode response) throws IOException {
+		if (!response.has("status") && status >= 400 && response.has("error"))
+			response.put("status", status);
+		byte[] bytes = objectMapper.writeValueAsBytes(response);
+		exchange.getResponseHeaders().set("Content-Type", JSON);
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream outputStream = exchange.getResponseBody()) {
+			outputStream.write(bytes);
+		}
+	}
+
+	private static byte[] readBody(HttpExchange exchange) throws IOException {
+		try (InputStream inputStream = exchange.getRequestBody()) {
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = inputStream.read(buffer)) != -1)
+				outputStream.write(buffer, 0, read);
+			return outputStream.toByteArray();
+		}
+	}
+
+	private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+		Map<String, String> params = new HashMap<>();
+		if (query == null)
+			return params;
+		for (String pair : query.split("&")) {
+			int separator = pair.indexOf('=');
+			String key = URLDecoder.decode(separator < 0 ? pair : pair.substring(0, separator), "UTF-8");
+			params.put(key, separator < 0 ? "" : URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+		}
+		return params;
+	}
+
+	private static class Scroll {
+
+		private final int size;
+		private final Deque<Document> remaining;
+
+		private Scroll(int size, List<Document> remaining) {
+			this.size = size;
+			this.remaining = new ArrayDeque<>(remaining);
+		}
+
+		private synchronized List<Document> nextPage() {
+			List<Document> page = new ArrayList<>();
+			while (!remaining.isEmpty() && page.size() < size)
+				page.add(remaining.pollFirst());
+			return page;
+		}
+	}
+
+	private static class Document {
+
+		private final String index;
+		private final String type;
+		private final String id;
+		private final ObjectNode source;
+		private final long version;
+
+		private Document(String index, String type, String id, ObjectNode source, long version) {
+			this.index = index;
+			this.type = type;
+			this.id = id;
+			this.source = source;
+			this.version = version;
+		}
+	}
+
+}
@@ -0,0 +1,55 @@
+package com.elasticsearch.benchmark;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.*;
+
+import com.elasticsearch.model.*;
+import com.elasticsearch.service.IdStrategy;
+
+/**
+ * Cost of generating a record ID under each strategy, against the truncated random UUID previously used.
+ * Run with several threads to see the generators contend, the GC profiler reports the allocation per ID.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdGenerationBenchmark {
+
+	private final IBook book = Book.of("978-0-7352-5330-8", "The Handmaid's Tale", "Margaret Atwood", 36);
+
+	@Benchmark
+	public String truncatedUuid() {
+		return UUID.randomUUID().toString().split("-")[0];
+	}
+
+	@Benchmark
+	public String flake() {
+		return IdStrategy.FLAKE.generateId(book);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public String flakeContended() {
+		return IdStrategy.FLAKE.generateId(book);
+	}
+
+	@Benchmark
+	public String isbn() {
+		return IdStrategy.ISBN.generateId(book);
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder().include(IdGenerationBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build();
+		new Runner(options).run();
+	}
+
+}
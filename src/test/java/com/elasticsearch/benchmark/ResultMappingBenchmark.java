@@ -0,0 +1,73 @@
+package com.elasticsearch.benchmark;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.xcontent.*;
+import org.elasticsearch.search.SearchHit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.*;
+
+import com.elasticsearch.model.*;
+import com.elasticsearch.service.BookCodec;
+import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.node.*;
+
+/**
+ * Client side cost of turning one page of search results into Book Objects: parsing the search response
+ * the way the high level client does and mapping every hit through the codec
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultMappingBenchmark {
+
+	@Param({ "10", "500" })
+	public int hits;
+
+	private BookCodec bookCodec;
+	private byte[] response;
+
+	@Setup
+	public void setup() throws Exception {
+		ObjectMapper objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+		bookCodec = new BookCodec(objectMapper);
+
+		ObjectNode searchResponse = objectMapper.createObjectNode().put("took", 1).put("timed_out", false);
+		searchResponse.putObject("_shards").put("total", 1).put("successful", 1).put("skipped", 0).put("failed", 0);
+		ObjectNode hitsNode = searchResponse.putObject("hits").put("total", hits).put("max_score", 1.0);
+		ArrayNode hitArray = hitsNode.putArray("hits");
+		for (int i = 0; i < hits; i++) {
+			IBook book = Book.of("97807352533" + i, "The Handmaid's Tale " + i, "Margaret Atwood", 36);
+			hitArray.addObject().put("_index", "bookdata").put("_type", "books").put("_id", book.getId()).put("_score", 1.0).set("_source",
+					objectMapper.valueToTree(book));
+		}
+		response = objectMapper.writeValueAsBytes(searchResponse);
+	}
+
+	@Benchmark
+	public SearchResponse parseResponse() throws Exception {
+		try (XContentParser parser = XContentType.JSON.xContent().createParser(NamedXContentRegistry.EMPTY, response)) {
+			return SearchResponse.fromXContent(parser);
+		}
+	}
+
+	@Benchmark
+	public List<IBook> parseAndMap() throws Exception {
+		return Arrays.stream(parseResponse().getHits().getHits()).map(SearchHit::getSourceRef).map(bookCodec::read).collect(Collectors.toList());
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder().include(ResultMappingBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,32 @@
+package com.elasticsearch.metrics;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+	@Test
+	public void testBucketBounds() {
+		// Every value must fall into a bucket whose upper bound is within 12.5% above it
+		for (long value = 0; value < 1_000_000; value += 7) {
+			long upperBound = Histogram.upperBoundOf(Histogram.indexOf(value));
+			assertTrue(upperBound >= value);
+			assertTrue(upperBound - value <= Math.max(1, value / 8));
+		}
+		assertTrue(Histogram.upperBoundOf(Histogram.indexOf(Long.MAX_VALUE)) == Long.MAX_VALUE);
+	}
+
+	@Test
+	public void testPercentiles() {
+		Histogram histogram = new Histogram();
+		for (int value = 1; value <= 1000; value++)
+			histogram.record(value);
+
+		assertEquals(histogram.getCount(), 1000);
+		assertEquals(histogram.percentile(50), 500, 500 / 8);
+		assertEquals(histogram.percentile(99), 990, 990 / 8);
+		assertEquals(histogram.percentile(100), 1000);
+	}
+
+}
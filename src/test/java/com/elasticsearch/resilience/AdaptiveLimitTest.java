@@ -0,0 +1,74 @@
+package com.elasticsearch.resilience;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.*;
+
+import org.junit.Test;
+
+public class AdaptiveLimitTest {
+
+	@Test
+	public void testBulkhead() {
+		AdaptiveLimit limit = new AdaptiveLimit(2, 1, 10, 2.0, 0.5);
+		assertTrue(limit.tryAcquire());
+		assertTrue(limit.tryAcquire());
+		assertFalse(limit.tryAcquire());
+
+		limit.cancel();
+		assertTrue(limit.tryAcquire());
+	}
+
+	@Test
+	public void testWaitsForPermit() throws Exception {
+		AdaptiveLimit limit = new AdaptiveLimit(1, 1, 10, 2.0, 0.5);
+		assertTrue(limit.tryAcquire());
+		assertFalse(limit.acquire(TimeUnit.MILLISECONDS.toNanos(10)));
+
+		// A released permit wakes up the waiting caller
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Boolean> waiting = executor.submit(() -> limit.acquire(TimeUnit.SECONDS.toNanos(5)));
+			Thread.sleep(50);
+			limit.release(1000, false);
+			assertTrue(waiting.get(5, TimeUnit.SECONDS));
+			assertEquals(limit.getInFlight(), 1);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testAdaptsToLatency() {
+		AdaptiveLimit limit = new AdaptiveLimit(10, 2, 20, 2.0, 0.5);
+
+		// Fully used at normal latency the limit grows
+		for (int i = 0; i < 200; i++) {
+			while (limit.tryAcquire())
+				;
+			limit.release(1000, false);
+		}
+		int grown = limit.getLimit();
+		assertTrue(grown > 10);
+
+		// A slow response shrinks it, the other requests of the same burst do not shrink it further
+		for (int i = 0; i < grown - 1; i++)
+			limit.cancel();
+		for (int i = 0; i < 3; i++)
+			assertTrue(limit.tryAcquire());
+		limit.release(10_000, false);
+		int shrunk = limit.getLimit();
+		assertEquals(shrunk, grown / 2);
+		limit.release(10_000, false);
+		limit.release(10_000, false);
+		assertEquals(limit.getLimit(), shrunk);
+
+		// Dropped responses shrink it down to the minimum but not below
+		for (int i = 0; i < 10; i++) {
+			assertTrue(limit.tryAcquire());
+			limit.release(1000, true);
+		}
+		assertEquals(limit.getLimit(), 2);
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.elasticsearch.resilience;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+	private final AtomicLong clock = new AtomicLong();
+	private final CircuitBreaker breaker = new CircuitBreaker(10, 5, 0.5, 0.8, 100, 1000, 2, clock::get);
+
+	@Test
+	public void testOpensOnFailureRate() {
+		// Below the minimum number of calls the circuit stays closed whatever the outcome
+		for (int i = 0; i < 4; i++)
+			breaker.record(1, true);
+		assertEquals(breaker.getState(), CircuitBreaker.State.CLOSED);
+
+		breaker.record(1, true);
+		assertEquals(breaker.getState(), CircuitBreaker.State.OPEN);
+		assertFalse(breaker.tryAcquire());
+	}
+
+	@Test
+	public void testOpensOnSlowCallRate() {
+		for (int i = 0; i < 8; i++)
+			breaker.record(100, false);
+		for (int i = 0; i < 2; i++)
+			breaker.record(1, false);
+		assertEquals(breaker.getState(), CircuitBreaker.State.OPEN);
+	}
+
+	@Test
+	public void testFailuresAgeOutOfTheWindow() {
+		// Four failures among the last ten calls stay below the threshold
+		breaker.record(1, false);
+		for (int i = 0; i < 4; i++) {
+			breaker.record(1, false);
+			breaker.record(1, true);
+		}
+		breaker.record(1, false);
+		for (int i = 0; i < 10; i++)
+			breaker.record(1, false);
+
+		// Once the earlier failures have left the window the next four do not open the circuit either, a fifth does
+		for (int i = 0; i < 4; i++)
+			breaker.record(1, true);
+		assertEquals(breaker.getState(), CircuitBreaker.State.CLOSED);
+		breaker.record(1, true);
+		assertEquals(breaker.getState(), CircuitBreaker.State.OPEN);
+	}
+
+	@Test
+	public void testHalfOpenTrialCalls() {
+		for (int i = 0; i < 5; i++)
+			breaker.record(1, true);
+
+		// After the open period only the trial calls are let through and a failing one opens the circuit again
+		clock.set(1000);
+		assertTrue(breaker.tryAcquire());
+		assertTrue(breaker.tryAcquire());
+		assertFalse(breaker.tryAcquire());
+		breaker.record(1, true);
+		assertEquals(breaker.getState(), CircuitBreaker.State.OPEN);
+
+		// Successful trial calls close it
+		clock.set(2000);
+		assertTrue(breaker.tryAcquire());
+		assertTrue(breaker.tryAcquire());
+		breaker.record(1, false);
+		breaker.record(1, false);
+		assertEquals(breaker.getState(), CircuitBreaker.State.CLOSED);
+		assertTrue(breaker.tryAcquire());
+	}
+
+}
@@ -0,0 +1,111 @@
+package com.elasticsearch.resilience;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+import org.elasticsearch.action.ActionListener;
+import org.junit.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.elasticsearch.metrics.Operation;
+
+public class ClientGuardTest {
+
+	private final ClientGuard guard = new ClientGuard();
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+	@Before
+	public void setUp() {
+		ReflectionTestUtils.setField(guard, "enabled", true);
+		ReflectionTestUtils.setField(guard, "initialLimit", 1);
+		ReflectionTestUtils.setField(guard, "minLimit", 1);
+		ReflectionTestUtils.setField(guard, "maxLimit", 1);
+		ReflectionTestUtils.setField(guard, "latencyTolerance", 2.0);
+		ReflectionTestUtils.setField(guard, "backoffRatio", 0.9);
+		ReflectionTestUtils.setField(guard, "timeoutMillis", 5000L);
+		ReflectionTestUtils.setField(guard, "batchWaitMillis", 5000L);
+		ReflectionTestUtils.setField(guard, "longRunningOperations", new String[] { "BULK" });
+		ReflectionTestUtils.setField(guard, "breakerWindowSize", 2);
+		ReflectionTestUtils.setField(guard, "breakerMinimumCalls", 2);
+		ReflectionTestUtils.setField(guard, "breakerFailureRate", 0.5);
+		ReflectionTestUtils.setField(guard, "breakerSlowCallRate", 1.0);
+		ReflectionTestUtils.setField(guard, "breakerSlowCallMillis", 2000L);
+		ReflectionTestUtils.setField(guard, "breakerOpenMillis", 200L);
+		ReflectionTestUtils.setField(guard, "breakerHalfOpenCalls", 1);
+		ReflectionTestUtils.invokeMethod(guard, "init");
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+		ReflectionTestUtils.invokeMethod(guard, "destroy");
+	}
+
+	@Test
+	public void testSaturatedLimitDelaysBulk() throws Exception {
+		CountDownLatch running = new CountDownLatch(1);
+		CountDownLatch finish = new CountDownLatch(1);
+		Future<String> first = executor.submit(() -> guard.wrap(Operation.BULK, () -> {
+			running.countDown();
+			try {
+				finish.await();
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException();
+			}
+			return "first";
+		}).get());
+		assertTrue(running.await(5, TimeUnit.SECONDS));
+
+		// The limit is used up, a plain call is rejected while a bulk waits for the permit
+		try {
+			guard.wrap(Operation.BULK, () -> "rejected").get();
+			fail();
+		} catch (RejectedCallException e) {
+			// expected
+		}
+
+		CompletableFuture<String> bulk = new CompletableFuture<>();
+		Thread bulkThread = new Thread(() -> guard.<String> wrapWaiting(Operation.BULK, listener -> listener.onResponse("bulk")).accept(completing(bulk)));
+		bulkThread.start();
+		Thread.sleep(100);
+		assertFalse(bulk.isDone());
+
+		finish.countDown();
+		assertEquals(first.get(5, TimeUnit.SECONDS), "first");
+		assertEquals(bulk.get(5, TimeUnit.SECONDS), "bulk");
+		bulkThread.join();
+	}
+
+	@Test
+	public void testBulkWaitsForOpenCircuit() throws Exception {
+		for (int i = 0; i < 2; i++) {
+			try {
+				guard.wrap(Operation.BULK, () -> {
+					throw new IOException("Connection refused");
+				}).get();
+				fail();
+			} catch (IOException e) {
+				// expected
+			}
+		}
+		try {
+			guard.wrap(Operation.BULK, () -> "rejected").get();
+			fail();
+		} catch (RejectedCallException e) {
+			// expected
+		}
+
+		// The bulk becomes the trial call once the open period has passed
+		CompletableFuture<String> bulk = new CompletableFuture<>();
+		guard.<String> wrapWaiting(Operation.BULK, listener -> listener.onResponse("bulk")).accept(completing(bulk));
+		assertEquals(bulk.get(5, TimeUnit.SECONDS), "bulk");
+		assertEquals(guard.wrap(Operation.BULK, () -> "closed").get(), "closed");
+	}
+
+	private static <T> ActionListener<T> completing(CompletableFuture<T> future) {
+		return ActionListener.wrap(future::complete, future::completeExceptionally);
+	}
+
+}
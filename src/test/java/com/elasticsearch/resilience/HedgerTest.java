@@ -0,0 +1,97 @@
+package com.elasticsearch.resilience;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.apache.http.HttpHost;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.get.*;
+import org.elasticsearch.client.*;
+import org.junit.*;
+
+import com.elasticsearch.benchmark.ElasticsearchStandIn;
+
+public class HedgerTest {
+
+	private final List<ElasticsearchStandIn> standIns = new ArrayList<>();
+	private final List<ReadNode> nodes = new ArrayList<>();
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+	@Before
+	public void setUp() throws IOException {
+		for (int i = 0; i < 2; i++) {
+			ElasticsearchStandIn standIn = new ElasticsearchStandIn();
+			standIns.add(standIn);
+			nodes.add(new ReadNode(standIn.getHost(), new RestHighLevelClient(RestClient.builder(HttpHost.create(standIn.getHost()))), 0.2));
+		}
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for (ReadNode node : nodes)
+			node.getClient().close();
+		standIns.forEach(ElasticsearchStandIn::close);
+		scheduler.shutdownNow();
+	}
+
+	@Test
+	public void testDuplicateOfSlowReadWins() throws Exception {
+		standIns.get(1).setDelayMillis(1000);
+		Hedger hedger = new Hedger(nodes, 95, TimeUnit.MILLISECONDS.toNanos(20), 0, 1000, 1000, 1.0, scheduler);
+
+		for (int i = 0; i < 20; i++) {
+			long start = System.nanoTime();
+			assertFalse(get(hedger, "id" + i).isExists());
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+		}
+
+		// Once the slow node has reads in flight it is picked less often than the fast one
+		assertTrue(standIns.get(0).getRequestCount() > standIns.get(1).getRequestCount());
+		assertTrue((Long) hedger.snapshot().get("hedgeWins") > 0);
+	}
+
+	@Test
+	public void testFailsOverToAnotherNode() throws Exception {
+		standIns.get(1).close();
+		Hedger hedger = new Hedger(nodes, 95, TimeUnit.SECONDS.toNanos(10), 0, 1000, 1000, 0, scheduler);
+
+		for (int i = 0; i < 10; i++)
+			assertFalse(get(hedger, "id" + i).isExists());
+		assertEquals(hedger.snapshot().get("hedges"), 0L);
+	}
+
+	@Test
+	public void testBudgetLimitsDuplicates() throws Exception {
+		standIns.forEach(standIn -> standIn.setDelayMillis(50));
+		Hedger hedger = new Hedger(nodes, 95, TimeUnit.MILLISECONDS.toNanos(1), 0, 1000, 1000, 0.1, scheduler);
+
+		for (int i = 0; i < 40; i++)
+			get(hedger, "id" + i);
+
+		// A full bucket of ten duplicates plus one for every ten reads
+		long hedges = (Long) hedger.snapshot().get("hedges");
+		assertTrue(hedges > 0);
+		assertTrue(hedges <= 14);
+	}
+
+	@Test
+	public void testDelayFollowsResponseTimes() throws Exception {
+		Hedger hedger = new Hedger(nodes, 50, TimeUnit.SECONDS.toNanos(10), 0, 10, 100, 0, scheduler);
+		assertEquals(hedger.getDelayNanos(), TimeUnit.SECONDS.toNanos(10));
+
+		for (int i = 0; i < 10; i++)
+			get(hedger, "id" + i);
+		assertTrue(hedger.getDelayNanos() < TimeUnit.SECONDS.toNanos(1));
+	}
+
+	private GetResponse get(Hedger hedger, String id) throws Exception {
+		CompletableFuture<GetResponse> future = new CompletableFuture<>();
+		hedger.read((client, preference, listener) -> client.getAsync(new GetRequest("books_read", "books", id).preference(preference), listener),
+				ActionListener.wrap(future::complete, future::completeExceptionally));
+		return future.get(5, TimeUnit.SECONDS);
+	}
+
+}
@@ -0,0 +1,144 @@
+package com.elasticsearch.service;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.concurrent.*;
+
+import org.junit.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.elasticsearch.model.*;
+
+public class BookChangeFeedTest {
+
+	private final BookChangeFeed feed = new BookChangeFeed();
+
+	@Before
+	public void setUp() {
+		ReflectionTestUtils.setField(feed, "historySize", 3);
+		ReflectionTestUtils.setField(feed, "bufferSize", 2);
+		ReflectionTestUtils.setField(feed, "senderThreads", 1);
+		ReflectionTestUtils.setField(feed, "heartbeatSeconds", 60);
+		ReflectionTestUtils.invokeMethod(feed, "init");
+	}
+
+	@After
+	public void tearDown() {
+		ReflectionTestUtils.invokeMethod(feed, "destroy");
+	}
+
+	@Test
+	public void testDeliversEventsFromNowOn() throws Exception {
+		feed.deleted("before");
+		QueueSink sink = new QueueSink();
+		feed.subscribe(null, sink);
+
+		feed.added(book("1"));
+		feed.deleted("2");
+
+		BookEvent added = sink.take();
+		assertEquals(added.getType(), BookEvent.Type.ADDED);
+		assertEquals(added.getBook().getId(), "1");
+		BookEvent deleted = sink.take();
+		assertEquals(deleted.getType(), BookEvent.Type.DELETED);
+		assertEquals(deleted.getId(), added.getId() + 1);
+	}
+
+	@Test
+	public void testSlowSubscriberGetsLatestChangeOrReload() throws Exception {
+		QueueSink sink = new QueueSink();
+		sink.blocked = new CountDownLatch(1);
+		feed.subscribe(null, sink);
+
+		// The first event is taken by the sender which then blocks, the next ones wait in the buffer
+		feed.added(book("1"));
+		Thread.sleep(100);
+		feed.added(book("2"));
+		feed.updated("2", book("2"));
+		feed.deleted("3");
+		sink.blocked.countDown();
+
+		assertEquals(sink.take().getType(), BookEvent.Type.ADDED);
+		BookEvent coalesced = sink.take();
+		assertEquals(coalesced.getType(), BookEvent.Type.ADDED);
+		assertEquals(coalesced.getBookId(), "2");
+		assertEquals(sink.take().getType(), BookEvent.Type.DELETED);
+
+		// A third record does not fit the buffer of two, the subscriber is told to reload
+		sink.blocked = new CountDownLatch(1);
+		feed.deleted("4");
+		Thread.sleep(100);
+		feed.deleted("5");
+		feed.deleted("6");
+		feed.deleted("7");
+		sink.blocked.countDown();
+
+		assertEquals(sink.take().getBookId(), "4");
+		BookEvent reload = sink.take();
+		assertEquals(reload.getType(), BookEvent.Type.RELOAD);
+		assertEquals(feed.snapshot().get("overflows"), Long.valueOf(1));
+		assertNull(sink.events.poll(100, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testResumesAfterLastEventId() throws Exception {
+		QueueSink first = new QueueSink();
+		BookChangeFeed.Subscription subscription = feed.subscribe(null, first);
+		feed.deleted("1");
+		long lastSeen = first.take().getId();
+		subscription.cancel();
+
+		feed.deleted("2");
+		feed.deleted("3");
+		QueueSink resumed = new QueueSink();
+		feed.subscribe(lastSeen, resumed);
+		assertEquals(resumed.take().getBookId(), "2");
+		assertEquals(resumed.take().getBookId(), "3");
+
+		// Only the last three events are kept, older positions cannot be resumed
+		feed.deleted("4");
+		QueueSink late = new QueueSink();
+		feed.subscribe(lastSeen, late);
+		assertEquals(late.take().getType(), BookEvent.Type.RELOAD);
+	}
+
+	private static IBook book(String id) {
+		IBook book = Book.of("isbn-" + id, "testTitle", "testAuthor", 10);
+		book.setId(id);
+		return book;
+	}
+
+	private static class QueueSink implements BookChangeFeed.Sink {
+
+		private final BlockingQueue<BookEvent> events = new LinkedBlockingQueue<>();
+		private volatile CountDownLatch blocked;
+
+		@Override
+		public void deliver(BookEvent event) throws IOException {
+			events.add(event);
+			CountDownLatch latch = blocked;
+			if (latch != null)
+				try {
+					latch.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+		}
+
+		@Override
+		public void heartbeat() {
+		}
+
+		@Override
+		public void fail(Exception e) {
+		}
+
+		private BookEvent take() throws InterruptedException {
+			BookEvent event = events.poll(5, TimeUnit.SECONDS);
+			assertNotNull(event);
+			return event;
+		}
+	}
+
+}
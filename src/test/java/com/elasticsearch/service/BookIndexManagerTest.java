@@ -0,0 +1,118 @@
+package com.elasticsearch.service;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.*;
+import org.junit.*;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
+
+import com.elasticsearch.model.ReindexResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+public class BookIndexManagerTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final List<String> requests = new CopyOnWriteArrayList<>();
+	private final CountDownLatch copying = new CountDownLatch(1);
+	private final CountDownLatch finishCopy = new CountDownLatch(1);
+	private HttpServer server;
+	private RestHighLevelClient client;
+	private BookIndexManager indexManager;
+
+	@Before
+	public void setUp() throws IOException {
+		// Answers the index calls of a reindex from bookdata_v2 into bookdata_v3, holding the first copy until released
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/", exchange -> {
+			String request = exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath() + " "
+					+ StreamUtils.copyToString(exchange.getRequestBody(), StandardCharsets.UTF_8);
+			String response = "{\"acknowledged\":true}";
+			if (request.startsWith("GET /_alias/")) {
+				response = "{\"bookdata_v2\":{\"aliases\":{}}}";
+			} else if (request.startsWith("POST /_reindex")) {
+				if (copying.getCount() > 0) {
+					copying.countDown();
+					try {
+						finishCopy.await(5, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				response = "{\"created\":1,\"updated\":0,\"failures\":[]}";
+			}
+			requests.add(request);
+			byte[] body = response.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			exchange.getResponseBody().write(body);
+			exchange.close();
+		});
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.start();
+
+		client = new RestHighLevelClient(RestClient.builder(new HttpHost("127.0.0.1", server.getAddress().getPort(), "http")));
+		indexManager = new BookIndexManager(objectMapper, client);
+		ReflectionTestUtils.setField(indexManager, "name", "bookdata");
+		ReflectionTestUtils.setField(indexManager, "version", 2);
+		ReflectionTestUtils.setField(indexManager, "definition", new ByteArrayResource("{}".getBytes(StandardCharsets.UTF_8)));
+		ReflectionTestUtils.setField(indexManager, "maxTrackedIds", 100);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		client.close();
+		server.stop(0);
+	}
+
+	@Test
+	public void testCatchUpWaitsForWritesSentBeforeSwitch() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<ReindexResult> reindex = executor.submit(() -> indexManager.reindex(3));
+			assertTrue(copying.await(5, TimeUnit.SECONDS));
+
+			// A write is sent while the first pass copies, it may still land in the old index after the switch
+			indexManager.changing("written");
+			long write = indexManager.beginWrite();
+			finishCopy.countDown();
+
+			Thread.sleep(200);
+			assertTrue(requests.stream().anyMatch(request -> request.startsWith("POST /_aliases")));
+			assertEquals(requests.stream().filter(request -> request.startsWith("POST /_reindex")).count(), 1);
+
+			// A write begun after the switch goes to the new index and is not waited for
+			long later = indexManager.beginWrite();
+			indexManager.endWrite(write);
+			ReindexResult result = reindex.get(5, TimeUnit.SECONDS);
+			indexManager.endWrite(later);
+			assertFalse(result.hasError());
+
+			// The old index is refreshed before the catch-up pass copies the written record
+			int refresh = indexOf("POST /bookdata_v2/_refresh");
+			int catchUp = requests.size() - 1;
+			assertTrue(refresh >= 0 && refresh < catchUp);
+			assertTrue(requests.get(catchUp).startsWith("POST /_reindex"));
+			assertTrue(requests.get(catchUp).contains("\"ids\":{\"values\":[\"written\"]}"));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private int indexOf(String prefix) {
+		for (int i = 0; i < requests.size(); i++)
+			if (requests.get(i).startsWith(prefix))
+				return i;
+		return -1;
+	}
+
+}
@@ -0,0 +1,89 @@
+package com.elasticsearch.service;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.elasticsearch.model.IBook;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class BookRecordReaderTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	public void testReadNdjson() throws IOException {
+		String input = "{\"isbn\":\"1\",\"title\":\"Title1\",\"author\":\"Author1\",\"price\":10}\n\n{\"isbn\":\"2\",\n{\"isbn\":\"3\",\"title\":\"Title3\"}\r\n";
+		try (BookRecordReader reader = reader(ImportFormat.NDJSON, input)) {
+			IBook book = reader.read();
+			assertEquals(book.getIsbn(), "1");
+			assertEquals(book.getPrice(), 10, 0);
+			assertEquals(reader.getLine(), 1);
+
+			// The malformed record is reported with its line and reading goes on with the next one
+			try {
+				reader.read();
+				fail();
+			} catch (IllegalArgumentException e) {
+				assertEquals(reader.getLine(), 3);
+			}
+			assertEquals(reader.read().getTitle(), "Title3");
+			assertNull(reader.read());
+		}
+	}
+
+	@Test
+	public void testReadCsv() throws IOException {
+		String input = "\uFEFFISBN,Title,Author,Price,Publisher\r\n1,Title1,Author1,10.5,Unused\r\n2,\"Title, with \"\"quotes\"\"\nand a break\",Author2,\n\n3,Title3,Author3,abc\n4,Title4\n";
+		try (BookRecordReader reader = reader(ImportFormat.CSV, input)) {
+			IBook book = reader.read();
+			assertEquals(book.getIsbn(), "1");
+			assertEquals(book.getAuthor(), "Author1");
+			assertEquals(book.getPrice(), 10.5, 0);
+			assertEquals(reader.getLine(), 2);
+
+			book = reader.read();
+			assertEquals(book.getTitle(), "Title, with \"quotes\"\nand a break");
+			assertEquals(book.getPrice(), 0, 0);
+			assertEquals(reader.getLine(), 3);
+
+			try {
+				reader.read();
+				fail();
+			} catch (IllegalArgumentException e) {
+				assertEquals(reader.getLine(), 6);
+			}
+
+			// Missing trailing fields stay empty and are left to the record validation
+			book = reader.read();
+			assertEquals(book.getIsbn(), "4");
+			assertNull(book.getAuthor());
+			assertNull(reader.read());
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testRejectsCsvWithoutRequiredColumns() throws IOException {
+		try (BookRecordReader reader = reader(ImportFormat.CSV, "isbn,title\n1,Title1\n")) {
+			reader.read();
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testRejectsOverlongRecord() throws IOException {
+		StringBuilder input = new StringBuilder("isbn,title,author\n\"");
+		for (int i = 0; i <= BookRecordReader.MAX_RECORD_LENGTH; i++)
+			input.append('x');
+		try (BookRecordReader reader = reader(ImportFormat.CSV, input.toString())) {
+			reader.read();
+		}
+	}
+
+	private BookRecordReader reader(ImportFormat format, String input) {
+		return BookRecordReader.of(format, new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), objectMapper);
+	}
+
+}
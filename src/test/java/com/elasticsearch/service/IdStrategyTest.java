@@ -0,0 +1,51 @@
+package com.elasticsearch.service;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.Test;
+
+import com.elasticsearch.model.*;
+
+public class IdStrategyTest {
+
+	@Test
+	public void testFlakeIdsAreUniqueAndOrdered() {
+		IBook book = Book.of("9780735253308", "testTitle", "testAuthor", 10);
+		String previous = IdStrategy.FLAKE.generateId(book);
+		for (int i = 0; i < 200_000; i++) {
+			String id = IdStrategy.FLAKE.generateId(book);
+			assertEquals(id.length(), 16);
+			assertTrue(id.compareTo(previous) > 0);
+			previous = id;
+		}
+	}
+
+	@Test
+	public void testFlakeIdsAreUniqueAcrossThreads() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		Set<String> ids = ConcurrentHashMap.newKeySet();
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < 4; t++)
+			futures.add(executor.submit(() -> {
+				for (int i = 0; i < 50_000; i++)
+					ids.add(Book.generateId());
+			}));
+		for (Future<?> future : futures)
+			future.get();
+		executor.shutdown();
+
+		assertEquals(ids.size(), 200_000);
+	}
+
+	@Test
+	public void testIsbnIdIsDerivedFromIsbn() {
+		IBook book = Book.of("978-0 7352-5330-x", "testTitle", "testAuthor", 10);
+		assertEquals(IdStrategy.ISBN.generateId(book), "978073525330X");
+		assertTrue(IdStrategy.ISBN.isDerived());
+		assertFalse(IdStrategy.FLAKE.isDerived());
+	}
+
+}
@@ -0,0 +1,85 @@
+package com.elasticsearch.service;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.Test;
+
+import com.elasticsearch.model.*;
+
+public class QueryCacheTest {
+
+	@Test
+	public void testKeyNormalizesRequests() {
+		SearchRequest request1 = new SearchRequest("books_read").source(new SearchSourceBuilder().query(QueryBuilders.prefixQuery("isbn", "123")).size(10));
+		SearchRequest request2 = new SearchRequest("books_read").source(new SearchSourceBuilder().query(QueryBuilders.prefixQuery("isbn", "123")).size(10));
+		SearchRequest request3 = new SearchRequest("books_read").source(new SearchSourceBuilder().query(QueryBuilders.prefixQuery("isbn", "124")).size(10));
+
+		assertEquals(QueryCache.key(request1), QueryCache.key(request2));
+		assertNotEquals(QueryCache.key(request1), QueryCache.key(request3));
+	}
+
+	@Test
+	public void testWriteInvalidatesResults() {
+		QueryCache cache = new QueryCache(1 << 20, 60_000, 0);
+		cache.put("all", "result", 10, cache.begin());
+		assertEquals(cache.get("all"), "result");
+
+		cache.invalidate();
+		assertNull(cache.get("all"));
+	}
+
+	@Test
+	public void testResultOfQueryOverlappingWriteIsNotCached() {
+		QueryCache cache = new QueryCache(1 << 20, 60_000, 0);
+		QueryCache.Ticket ticket = cache.begin();
+		cache.invalidate();
+		cache.put("all", "result", 10, ticket);
+		assertNull(cache.get("all"));
+	}
+
+	@Test
+	public void testResultReadRightAfterWriteIsNotCached() {
+		QueryCache cache = new QueryCache(1 << 20, 60_000, 60_000);
+		cache.invalidate();
+		cache.put("all", "result", 10, cache.begin());
+		assertNull(cache.get("all"));
+	}
+
+	@Test
+	public void testStaleResultExpires() throws InterruptedException {
+		QueryCache cache = new QueryCache(1 << 20, 1, 0);
+		cache.put("all", "result", 10, cache.begin());
+		Thread.sleep(5);
+		assertNull(cache.get("all"));
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsedWithinByteBudget() {
+		QueryCache cache = new QueryCache(100, 60_000, 0);
+		cache.put("a", "a", 40, cache.begin());
+		cache.put("b", "b", 40, cache.begin());
+		cache.get("a");
+		cache.put("c", "c", 40, cache.begin());
+
+		assertEquals(cache.get("a"), "a");
+		assertNull(cache.get("b"));
+		assertEquals(cache.get("c"), "c");
+		assertEquals(cache.stats().get("bytes"), Long.valueOf(80));
+
+		// A result larger than the whole budget is never cached
+		cache.put("d", "d", 101, cache.begin());
+		assertNull(cache.get("d"));
+	}
+
+	@Test
+	public void testWeighGrowsWithRecords() {
+		List<IBook> books = Arrays.asList(Book.of("12345789", "testTitle1", "testAuthor1", 100), Book.of("12345790", "testTitle2", "testAuthor2", 100));
+		assertTrue(QueryCache.weigh(books) > QueryCache.weigh(books.subList(0, 1)));
+	}
+
+}
@@ -0,0 +1,30 @@
+package com.elasticsearch.service;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class SearchCursorTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	public void testRoundTrip() {
+		String cursor = SearchCursor.encode(objectMapper, new Object[] { 12.5f, "Tolkien", "AAAB" });
+		assertTrue(cursor.matches("[A-Za-z0-9_-]+"));
+		assertArrayEquals(SearchCursor.decode(objectMapper, cursor, 3), new Object[] { 12.5, "Tolkien", "AAAB" });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectsMalformedCursor() {
+		SearchCursor.decode(objectMapper, "not a cursor", 2);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectsCursorOfOtherSort() {
+		SearchCursor.decode(objectMapper, SearchCursor.encode(objectMapper, new Object[] { "AAAB" }), 2);
+	}
+
+}